@@ -2,47 +2,87 @@ package com.cw.artest;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
+import android.widget.CheckBox;
 
 import com.cw.artest.augmentedimage.AugmentedImageActivity;
+import com.cw.artest.augmentedimage.ArStartup;
+import com.cw.artest.augmentedimage.AugmentedImageFragment;
+import com.cw.artest.augmentedimage.StartupTrace;
+import com.cw.artest.net.HttpStackBenchmark;
+
+import java.io.IOException;
 
 import androidx.appcompat.app.AppCompatActivity;
 
 public class MainActivity extends AppCompatActivity {
 
+    private static final String TAG = "MainActivity";
+
+    private CheckBox imagesOnlyProfile;
+    private CheckBox headlessVideo;
+    private CheckBox metricsOverlay;
+    private CheckBox recordTrace;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        imagesOnlyProfile = findViewById(R.id.imagesOnlyProfile);
+        headlessVideo = findViewById(R.id.headlessVideo);
+        metricsOverlay = findViewById(R.id.metricsOverlay);
+        recordTrace = findViewById(R.id.recordTrace);
         View startModel = findViewById(R.id.startModel);
-        startModel.setOnClickListener(v -> {
-            Intent intent = new Intent(MainActivity.this, AugmentedImageActivity.class);
-            intent.putExtra("showType", 0);
-            startActivity(intent);
-        });
+        startModel.setOnClickListener(v -> startAugmentedImage(0));
         View startImage = findViewById(R.id.startImage);
-        startImage.setOnClickListener(v -> {
-            Intent intent = new Intent(MainActivity.this, AugmentedImageActivity.class);
-            intent.putExtra("showType", 1);
-            startActivity(intent);
-        });
+        startImage.setOnClickListener(v -> startAugmentedImage(1));
         View startVideo = findViewById(R.id.startVideo);
-        startVideo.setOnClickListener(v -> {
-            Intent intent = new Intent(MainActivity.this, AugmentedImageActivity.class);
-            intent.putExtra("showType", 2);
-            startActivity(intent);
-        });
+        startVideo.setOnClickListener(v -> startAugmentedImage(2));
         View startVideo2 = findViewById(R.id.startVideo2);
-        startVideo2.setOnClickListener(v -> {
-            Intent intent = new Intent(MainActivity.this, AugmentedImageActivity.class);
-            intent.putExtra("showType", 3);
-            startActivity(intent);
-        });
+        startVideo2.setOnClickListener(v -> startAugmentedImage(3));
         View startVideo3 = findViewById(R.id.startVideo3);
-        startVideo3.setOnClickListener(v -> {
-            Intent intent = new Intent(MainActivity.this, AugmentedImageActivity.class);
-            intent.putExtra("showType", 4);
-            startActivity(intent);
-        });
+        startVideo3.setOnClickListener(v -> startAugmentedImage(4));
+        View startVideo4 = findViewById(R.id.startVideo4);
+        startVideo4.setOnClickListener(v -> startAugmentedImage(5));
+        // Warms up the AR session while the menu is shown.
+        ArStartup.prewarm(this);
+        if (BuildConfig.DEBUG) {
+            //长按视频展示，对比共享HTTP客户端前后的请求耗时，结果见日志
+            startVideo.setOnLongClickListener(v -> {
+                new Thread(() -> {
+                    try {
+                        new HttpStackBenchmark(200, 50).run();
+                    } catch (IOException e) {
+                        Log.e(TAG, "HTTP benchmark failed", e);
+                    }
+                }, "HttpStackBenchmark").start();
+                return true;
+            });
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        StartupTrace.mark(StartupTrace.MENU_SHOWN);
+    }
+
+    private void startAugmentedImage(int showType) {
+        Intent intent = new Intent(MainActivity.this, AugmentedImageActivity.class);
+        // Reuses the running AR session if there is one, see AugmentedImageActivity#onNewIntent.
+        intent.addFlags(Intent.FLAG_ACTIVITY_REORDER_TO_FRONT);
+        intent.putExtra("showType", showType);
+        intent.putExtra(AugmentedImageFragment.EXTRA_IMAGES_ONLY_PROFILE, imagesOnlyProfile.isChecked());
+        intent.putExtra(AugmentedImageActivity.EXTRA_HEADLESS_VIDEO, headlessVideo.isChecked());
+        intent.putExtra(AugmentedImageActivity.EXTRA_METRICS_OVERLAY, metricsOverlay.isChecked());
+        intent.putExtra(AugmentedImageActivity.EXTRA_RECORD_TRACE, recordTrace.isChecked());
+        startActivity(intent);
+    }
+
+    @Override
+    public void onBackPressed() {
+        // Also closes the AR session kept in the background.
+        finishAffinity();
     }
 }
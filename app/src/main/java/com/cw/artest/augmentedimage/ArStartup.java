@@ -0,0 +1,153 @@
+package com.cw.artest.augmentedimage;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.cw.artest.video.cache.VideoCaches;
+import com.google.ar.core.ArCoreApk;
+import com.google.ar.core.Session;
+import com.google.ar.core.exceptions.UnavailableException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the device capability checks and the ARCore availability check once per process, and while
+ * the menu is shown warms up what the first AR session needs: the ARCore library and service, the
+ * image database, the renderables most show types use and the video cache server. See
+ * {@link StartupTrace} for the markers of the cold start.
+ */
+@SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+public final class ArStartup {
+
+    private static final String TAG = "ArStartup";
+
+    // Do a runtime check for the OpenGL level available at runtime to avoid Sceneform crashing the
+    // application.
+    private static final double MIN_OPENGL_VERSION = 3.0;
+
+    // ARCore answers transient availability while it is still checking, ask again after this.
+    private static final long AVAILABILITY_RETRY_MS = 200;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ArStartup");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private static Capabilities capabilities;
+    private static ArCoreApk.Availability availability;
+    private static boolean prewarmStarted;
+
+    /**
+     * What the device supports, checked once.
+     */
+    public static final class Capabilities {
+        private final boolean sdkSupported;
+        private final boolean openGlSupported;
+
+        Capabilities(boolean sdkSupported, boolean openGlSupported) {
+            this.sdkSupported = sdkSupported;
+            this.openGlSupported = openGlSupported;
+        }
+
+        public boolean isSdkSupported() {
+            return sdkSupported;
+        }
+
+        public boolean isOpenGlSupported() {
+            return openGlSupported;
+        }
+    }
+
+    private ArStartup() {
+    }
+
+    public static synchronized Capabilities getCapabilities(Context context) {
+        if (capabilities == null) {
+            String openGlVersionString =
+                    ((ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE))
+                            .getDeviceConfigurationInfo()
+                            .getGlEsVersion();
+            capabilities = new Capabilities(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N,
+                    Double.parseDouble(openGlVersionString) >= MIN_OPENGL_VERSION);
+        }
+        return capabilities;
+    }
+
+    /**
+     * The ARCore availability, or null while it is still being checked.
+     */
+    public static synchronized ArCoreApk.Availability getAvailability() {
+        return availability;
+    }
+
+    /**
+     * Starts warming up the first AR session, once per process. Call from the main thread.
+     */
+    public static void prewarm(Context context) {
+        synchronized (ArStartup.class) {
+            if (prewarmStarted) {
+                return;
+            }
+            prewarmStarted = true;
+        }
+        Context appContext = context.getApplicationContext();
+        // Videos are played outside AR as well.
+        VideoCaches.startAsync(appContext);
+        Capabilities capabilities = getCapabilities(appContext);
+        if (!capabilities.isSdkSupported() || !capabilities.isOpenGlSupported()) {
+            // The AR activity tells the user.
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+        CompletableFuture<Void> database =
+                ImageDatabaseLoader.prefetchSerialized(appContext, AugmentedImageFragment.SAMPLE_IMAGE_DATABASE);
+        // Loading the first renderable also starts the Sceneform renderer.
+        CompletableFuture<?> andy = RenderableCache.getInstance().load(appContext, RenderableCache.ANDY_DANCE);
+        CompletableFuture<?> chroma = RenderableCache.getInstance().load(appContext, RenderableCache.CHROMA_KEY_VIDEO);
+        CompletableFuture<Void> session = new CompletableFuture<>();
+        checkAvailability(appContext, session);
+        CompletableFuture.allOf(database, andy, chroma, session).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                Log.w(TAG, "Pre-warm failed, the AR activity loads everything itself", throwable);
+            }
+            Log.d(TAG, "Pre-warmed in " + (SystemClock.elapsedRealtime() - start) + " ms");
+            StartupTrace.mark(StartupTrace.PREWARM_DONE);
+        });
+    }
+
+    private static void checkAvailability(Context context, CompletableFuture<Void> done) {
+        ArCoreApk.Availability result = ArCoreApk.getInstance().checkAvailability(context);
+        if (result.isTransient()) {
+            new Handler(Looper.getMainLooper()).postDelayed(
+                    () -> checkAvailability(context, done), AVAILABILITY_RETRY_MS);
+            return;
+        }
+        synchronized (ArStartup.class) {
+            availability = result;
+        }
+        Log.d(TAG, "ARCore availability: " + result);
+        if (result != ArCoreApk.Availability.SUPPORTED_INSTALLED) {
+            // Installing is left to the AR activity, which can ask the user.
+            done.complete(null);
+            return;
+        }
+        EXECUTOR.execute(() -> {
+            // Loads the ARCore library and binds its service, the expensive part of the first
+            // session. The session of the AR activity is created by the fragment.
+            try {
+                new Session(context).close();
+                done.complete(null);
+            } catch (UnavailableException | RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        });
+    }
+}
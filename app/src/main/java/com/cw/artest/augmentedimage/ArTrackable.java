@@ -0,0 +1,85 @@
+package com.cw.artest.augmentedimage;
+
+import com.cw.artest.tracking.Trackable;
+import com.cw.artest.tracking.TrackingState;
+import com.google.ar.core.AugmentedImage;
+
+import java.util.Arrays;
+
+/**
+ * Presents an ARCore {@link AugmentedImage} as a {@link Trackable} of the tracking engine.
+ *
+ * <p>One instance per image index is reused every frame, see {@link Pool}, so wrapping does not
+ * allocate on the frame path.
+ */
+final class ArTrackable implements Trackable {
+
+    private final int index;
+    private AugmentedImage image;
+
+    private ArTrackable(int index) {
+        this.index = index;
+    }
+
+    AugmentedImage getImage() {
+        return image;
+    }
+
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+        return trackingStateOf(image);
+    }
+
+    static TrackingState trackingStateOf(AugmentedImage image) {
+        switch (image.getTrackingState()) {
+            case TRACKING:
+                return TrackingState.TRACKING;
+            case STOPPED:
+                return TrackingState.STOPPED;
+            case PAUSED:
+            default:
+                return TrackingState.PAUSED;
+        }
+    }
+
+    @Override
+    public boolean isFullTracking() {
+        return image.getTrackingMethod() == AugmentedImage.TrackingMethod.FULL_TRACKING;
+    }
+
+    @Override
+    public float getExtentX() {
+        return image.getExtentX();
+    }
+
+    @Override
+    public float getExtentZ() {
+        return image.getExtentZ();
+    }
+
+    /**
+     * The wrappers, addressed by image index.
+     */
+    static final class Pool {
+        private ArTrackable[] trackables = new ArTrackable[16];
+
+        ArTrackable wrap(AugmentedImage image) {
+            int index = image.getIndex();
+            if (index >= trackables.length) {
+                trackables = Arrays.copyOf(trackables, Math.max(index + 1, trackables.length * 2));
+            }
+            ArTrackable trackable = trackables[index];
+            if (trackable == null) {
+                trackable = new ArTrackable(index);
+                trackables[index] = trackable;
+            }
+            trackable.image = image;
+            return trackable;
+        }
+    }
+}
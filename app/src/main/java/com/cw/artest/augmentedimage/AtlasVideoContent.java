@@ -0,0 +1,88 @@
+package com.cw.artest.augmentedimage;
+
+import com.google.ar.core.AugmentedImage;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 视频展示(共享解码): one tile of the host's {@link VideoAtlas}, keyed out like
+ * {@link ChromaVideoContent}. The tile is picked by the index of the image.
+ */
+@SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+class AtlasVideoContent implements ImageContent {
+
+    private VideoAtlas atlas;
+    private CompletableFuture<ModelRenderable> model;
+    private boolean active = true;
+    private boolean playing;
+
+    @Override
+    public void prepare(ContentHost host) {
+        atlas = host.getVideoAtlas();
+        // Only the material of the chroma key model is used, on a quad built per tile.
+        model = RenderableCache.getInstance().load(host.getActivity(), RenderableCache.CHROMA_KEY_VIDEO);
+    }
+
+    @Override
+    public void attach(ContentHost host, AugmentedImage image, ImageResources resources) {
+        AnchorNode node = new AnchorNode(image.createAnchor(image.getCenterPose()));
+        ResourceCounters.ANCHORS.incrementAndGet();
+        resources.setNode(node);
+        int tile = image.getIndex() % atlas.getTileCount();
+        float extentX = image.getExtentX();
+        updatePlayback(true);
+
+        model.thenCompose(modelRenderable -> {
+            Material material = modelRenderable.getMaterial().makeCopy();
+            material.setFloat4("keyColor", ChromaVideoContent.CHROMA_KEY_COLOR);
+            return atlas.createTileRenderable(tile, material);
+        }).thenAccept(tileRenderable -> {
+            if (resources.isReleased()) {
+                return;
+            }
+            Node videoNode = new Node();
+            videoNode.setParent(node);
+            // The quad is one meter wide, as wide as the image.
+            videoNode.setLocalScale(new Vector3(extentX, extentX, 1f));
+            videoNode.setRenderable(tileRenderable);
+        }).exceptionally(throwable -> {
+            host.showContentError(throwable);
+            return null;
+        });
+    }
+
+    @Override
+    public void setActive(boolean active) {
+        this.active = active;
+        updatePlayback(active);
+    }
+
+    @Override
+    public void setDetailLevel(int level) {
+        // All tiles come from one stream.
+    }
+
+    private void updatePlayback(boolean play) {
+        play = play && active;
+        if (play == playing) {
+            return;
+        }
+        playing = play;
+        if (play) {
+            atlas.addActiveUser();
+        } else {
+            atlas.removeActiveUser();
+        }
+    }
+
+    @Override
+    public void release() {
+        model.cancel(false);
+        updatePlayback(false);
+    }
+}
@@ -18,33 +18,35 @@ package com.cw.artest.augmentedimage;
 
 import android.content.Intent;
 import android.lib.widget.snackbar.Snackbar;
-import android.media.MediaPlayer;
-import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.View;
+import android.widget.FrameLayout;
 import android.widget.ImageView;
 
-import com.bumptech.glide.Glide;
+import com.cw.artest.BuildConfig;
+import com.cw.artest.MainActivity;
 import com.cw.artest.R;
-import com.cw.artest.video.PlayPickActivity;
-import com.cw.artest.video.SmartPickVideo;
-import com.cw.artest.video.VideoOnPrepareCallBack;
+import com.cw.artest.gif.GifTexturePlayer;
+import com.cw.artest.metrics.Metrics;
+import com.cw.artest.metrics.MetricsOverlay;
+import com.cw.artest.tracking.Content;
+import com.cw.artest.tracking.ContentSlot;
+import com.cw.artest.tracking.ImageStateTable;
+import com.cw.artest.tracking.LevelOfDetail;
+import com.cw.artest.tracking.TrackingEngine;
+import com.cw.artest.video.MediaPlayerPool;
 import com.google.ar.core.AugmentedImage;
 import com.google.ar.core.Frame;
 import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.ArSceneView;
 import com.google.ar.sceneform.FrameTime;
-import com.google.ar.sceneform.Node;
-import com.google.ar.sceneform.math.Quaternion;
-import com.google.ar.sceneform.math.Vector3;
-import com.google.ar.sceneform.rendering.Color;
-import com.google.ar.sceneform.rendering.ExternalTexture;
-import com.google.ar.sceneform.rendering.ModelRenderable;
-import com.google.ar.sceneform.rendering.ViewRenderable;
-import com.google.ar.sceneform.ux.ArFragment;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
@@ -59,203 +61,477 @@ import androidx.appcompat.app.AppCompatActivity;
  * AR_AUGMENTED_IMAGE_TRACKING_METHOD_FULL_TRACKING. See details in <a
  * href="https://developers.google.com/ar/develop/c/augmented-images/">Recognize and Augment
  * Images</a>.
+ *
+ * <p>One instance hosts all show types. Picking another one in the menu brings it back with
+ * {@link #onNewIntent}, which only swaps the content of the images; the session, image database and
+ * cached renderables stay warm.
+ *
+ * <p>Content of an image that is only tracked by its last known pose is hidden and paused until the
+ * image is fully tracked again, see {@link TrackingEngine}. The same happens to images outside the
+ * view or too small on screen, see {@link ImageCuller}.
  */
-public class AugmentedImageActivity extends AppCompatActivity {
+public class AugmentedImageActivity extends AppCompatActivity implements ContentHost {
+
+    private static final String TAG = "AugmentedImageActivity";
+
+    /**
+     * Boolean extra, whether videos are decoded straight into a texture instead of through a player
+     * view. Defaults to true, turn it off to compare the frame times of both.
+     */
+    public static final String EXTRA_HEADLESS_VIDEO = "headlessVideo";
+
+    /**
+     * Boolean extra, whether {@link Metrics} are shown on top of the camera view.
+     */
+    public static final String EXTRA_METRICS_OVERLAY = "metricsOverlay";
 
-    private ArFragment arFragment;
+    /**
+     * Boolean extra, whether the images reported each frame are recorded to a trace, see
+     * {@link TraceRecorder}.
+     */
+    public static final String EXTRA_RECORD_TRACE = "recordTrace";
+
+    // Where Metrics are written when the activity is destroyed, in the external files dir.
+    private static final String METRICS_FILE = "metrics.txt";
+    // Where traces are recorded, in the external files dir.
+    private static final String TRACES_DIR = "traces";
+
+    private AugmentedImageFragment arFragment;
     private ImageView fitToScanView;
 
-    // The color to filter out of the video.
-    private static final Color CHROMA_KEY_COLOR = new Color(0.1843f, 1.0f, 0.098f);
+    // Drives the content of each augmented image, addressed by the index of the image in the database.
+    // Runs with the engine's default delays, which trace replays use as well.
+    private final TrackingEngine<ArTrackable, ImageResources> engine = new TrackingEngine<>(new ImageBinder());
+    private final ImageStateTable<ImageResources> imageStates = engine.getTable();
+    private final ArTrackable.Pool trackables = new ArTrackable.Pool();
+
+    // Images covering less of the screen are not rendered.
+    private static final float MIN_COVERAGE_PIXELS = 48 * 48;
+
+    // Images covering less of the screen show their low detail variant.
+    private static final float HIGH_DETAIL_COVERAGE_PIXELS = 160 * 160;
+
+    // Maximum number of chroma key videos decoding at the same time.
+    private static final int MAX_CHROMA_PLAYERS = 2;
+
+    // Video shown by AtlasVideoContent, a mosaic of 1 x 1 tiles.
+    private static final String ATLAS_VIDEO_URL = "android.resource://" + BuildConfig.APPLICATION_ID + "/" + R.raw.lion_chroma;
+    private static final float ATLAS_TILE_ASPECT_RATIO = 16f / 9f;
 
-    // Augmented image and its associated center pose anchor, keyed by the augmented image in
-    // the database.
-    private final Map<AugmentedImage, Node> augmentedImageMap = new HashMap<>();
+    // Number of frames the CPU time is averaged over.
+    private static final int CPU_SAMPLE_FRAMES = 300;
+
+    private int showType;
+    private long createdAtMs;
+    private boolean frameSeen;
+    private boolean trackingSeen;
+    private ContentRegistry registry;
+    // When the show type was switched, until content of the new type is attached.
+    private long modeSwitchedAtMs = -1;
+    private boolean rebound;
+    // When the full screen video was closed, until an image is fully tracked again.
+    private long videoClosedAtMs = -1;
+    private MediaPlayerPool chromaPlayerPool;
+    private VideoAtlas videoAtlas;
+    private int playerRequestCount;
+    private FrameCpuSampler frameCpuSampler;
+    private FrameAllocationProbe frameAllocationProbe;
+    private MetricsOverlay metricsOverlay;
+    private TraceRecorder traceRecorder;
+    private final ImageCuller imageCuller = new ImageCuller(MIN_COVERAGE_PIXELS);
+    private final LevelOfDetail levelOfDetail = new LevelOfDetail(HIGH_DETAIL_COVERAGE_PIXELS);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        createdAtMs = SystemClock.uptimeMillis();
+        StartupTrace.mark(StartupTrace.AR_ACTIVITY_CREATED);
         setContentView(R.layout.activity_augment_image);
 
-        arFragment = (ArFragment) getSupportFragmentManager().findFragmentById(R.id.ux_fragment);
+        arFragment = (AugmentedImageFragment) getSupportFragmentManager().findFragmentById(R.id.ux_fragment);
         fitToScanView = findViewById(R.id.image_view_fit_to_scan);
+        showType = getIntent().getIntExtra("showType", 0);
+        // Every image shows the content picked in the menu. Posters can get their own content with
+        // e.g. registry.register("poster.jpg", ChromaVideoContent::new).
+        boolean headlessVideo = getIntent().getBooleanExtra(EXTRA_HEADLESS_VIDEO, true);
+        registry = ContentRegistry.forShowType(showType, headlessVideo);
+        engine.setListener(new ImageListener());
+        updateTraceRecorder();
+        chromaPlayerPool = new MediaPlayerPool(this, R.raw.lion_chroma, MAX_CHROMA_PLAYERS);
+        frameCpuSampler = newFrameCpuSampler(headlessVideo);
+        frameAllocationProbe = new FrameAllocationProbe(BuildConfig.DEBUG);
 
         arFragment.getArSceneView().getScene().addOnUpdateListener(this::onUpdateFrame);
+        arFragment.setOnImageDatabaseChangedListener(databaseName -> {
+            // Images of the previous shard will never be updated again, and indices are per database.
+            releaseAllImages();
+            registry.invalidate();
+            fitToScanView.setVisibility(View.VISIBLE);
+        });
+    }
+
+    /**
+     * Switches to the show type picked in the menu without restarting the session.
+     */
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        boolean imagesOnlyProfile = intent.getBooleanExtra(AugmentedImageFragment.EXTRA_IMAGES_ONLY_PROFILE, true);
+        boolean profileChanged = imagesOnlyProfile != arFragment.isImagesOnlyProfile();
+        setIntent(intent);
+        if (profileChanged) {
+            // The session config is only applied when the session is created.
+            recreate();
+            return;
+        }
+
+        long startMs = SystemClock.uptimeMillis();
+        showType = intent.getIntExtra("showType", 0);
+        boolean headlessVideo = intent.getBooleanExtra(EXTRA_HEADLESS_VIDEO, true);
+        // Release everything prepared with the previous registry. Tracked images are reported again on
+        // the next frames and get content of the new type.
+        releaseAllImages();
+        registry = ContentRegistry.forShowType(showType, headlessVideo);
+        fitToScanView.setVisibility(View.VISIBLE);
+        frameCpuSampler = newFrameCpuSampler(headlessVideo);
+        updateTraceRecorder();
+        modeSwitchedAtMs = startMs;
+        rebound = false;
+        Log.d(TAG, "Switched to show type " + showType + " in " + (SystemClock.uptimeMillis() - startMs)
+                + " ms, " + ResourceCounters.dump());
+    }
+
+    @Override
+    public void onBackPressed() {
+        // Keep the session for the next show type picked in the menu, see onNewIntent.
+        Intent intent = new Intent(this, MainActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_REORDER_TO_FRONT);
+        startActivity(intent);
+    }
+
+    private FrameCpuSampler newFrameCpuSampler(boolean headlessVideo) {
+        return new FrameCpuSampler("show type " + showType + ", "
+                + (arFragment.isImagesOnlyProfile() ? "images only profile" : "default profile")
+                + (headlessVideo ? ", headless video" : ", video view"), CPU_SAMPLE_FRAMES);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        if (augmentedImageMap.isEmpty()) {
+        updateMetricsOverlay();
+        if (imageStates.getAttachedCount() == 0) {
             fitToScanView.setVisibility(View.VISIBLE);
         }
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (metricsOverlay != null) {
+            metricsOverlay.stop();
+        }
+    }
+
+    private void updateMetricsOverlay() {
+        if (getIntent().getBooleanExtra(EXTRA_METRICS_OVERLAY, false)) {
+            if (metricsOverlay == null) {
+                metricsOverlay = new MetricsOverlay((FrameLayout) fitToScanView.getParent());
+            }
+            metricsOverlay.setVisible(true);
+            metricsOverlay.start();
+        } else if (metricsOverlay != null) {
+            metricsOverlay.stop();
+            metricsOverlay.setVisible(false);
+        }
+    }
+
+    private void updateTraceRecorder() {
+        if (getIntent().getBooleanExtra(EXTRA_RECORD_TRACE, false)) {
+            File filesDir = getExternalFilesDir(null);
+            if (traceRecorder == null && filesDir != null) {
+                try {
+                    traceRecorder = TraceRecorder.start(new File(filesDir, TRACES_DIR));
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot record trace", e);
+                }
+            }
+        } else if (traceRecorder != null) {
+            traceRecorder.stop();
+            traceRecorder = null;
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        Metrics.log();
+        File metricsDir = getExternalFilesDir(null);
+        if (metricsDir != null) {
+            try {
+                Metrics.writeTo(new File(metricsDir, METRICS_FILE));
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot write metrics", e);
+            }
+        }
+        if (traceRecorder != null) {
+            traceRecorder.stop();
+            traceRecorder = null;
+        }
+        // Release before the fragment tears down the session the anchors belong to.
+        releaseAllImages();
+        chromaPlayerPool.releaseAll();
+        if (videoAtlas != null) {
+            videoAtlas.release();
+        }
+        frameAllocationProbe.stop();
+        Log.d(TAG, "Resources after destroy: " + ResourceCounters.dump());
+        super.onDestroy();
+    }
+
+    private void releaseAllImages() {
+        engine.releaseAll();
+        if (traceRecorder != null) {
+            traceRecorder.reset();
+        }
+    }
+
     /**
      * Registered with the Sceneform Scene object, this method is called at the start of each frame.
      *
      * @param frameTime - time since last frame.
      */
     private void onUpdateFrame(FrameTime frameTime) {
+        long startNs = System.nanoTime();
+        updateFrame(frameTime);
+        Metrics.FRAME_UPDATE.recordSince(startNs);
+    }
+
+    private void updateFrame(FrameTime frameTime) {
+        frameCpuSampler.onFrame(frameTime.getDeltaSeconds());
+        Metrics.FRAME_INTERVAL.recordMicros((long) (frameTime.getDeltaSeconds() * 1_000_000));
         Frame frame = arFragment.getArSceneView().getArFrame();
 
         // If there is no frame, just return.
         if (frame == null) {
             return;
         }
+        if (!frameSeen) {
+            frameSeen = true;
+            StartupTrace.mark(StartupTrace.FIRST_FRAME);
+        }
 
-        Collection<AugmentedImage> updatedAugmentedImages =
-                frame.getUpdatedTrackables(AugmentedImage.class);
-        for (AugmentedImage augmentedImage : updatedAugmentedImages) {
-            switch (augmentedImage.getTrackingState()) {
-                case PAUSED:
-                    // When an image is in PAUSED state, but the camera is not PAUSED, it has been detected,
-                    // but not yet tracked.
-                    //Snackbar.with(this).setText("检测到图像").show();
-                    break;
-
-                case TRACKING:
-                    // Have to switch to UI Thread to update View.
-                    fitToScanView.setVisibility(View.GONE);
-
-                    // Create a new anchor for newly found images.
-                    if (!augmentedImageMap.containsKey(augmentedImage)) {
-                        int mode = getIntent().getIntExtra("showType", 0);
-                        if (mode == 0) {
-                            //模型展示
-                            AugmentedImageNode node = new AugmentedImageNode(this);
-                            node.setImage(arFragment.getTransformationSystem(), augmentedImage);
-                            augmentedImageMap.put(augmentedImage, node);
-                            this.arFragment.getArSceneView().getScene().addChild(node);
-                        } else if (mode == 1) {
-                            //图片展示
-                            AnchorNode node = new AnchorNode(augmentedImage.createAnchor(augmentedImage.getCenterPose()));
-                            ViewRenderable.builder()
-                                    .setView(this, R.layout.renderable_image).build()
-                                    .thenAccept(viewRenderable -> {
-                                        ImageView imageView = viewRenderable.getView().findViewById(R.id.image);
-                                        Glide.with(this).load("file:///android_asset/earth.gif").into(imageView);
-                                        //TransformableNode transformableNode = new TransformableNode(arFragment.getTransformationSystem());
-                                        //AnchorNode transformableNode = new AnchorNode();
-                                        Node transformableNode = new Node();
-                                        transformableNode.setParent(node);
-                                        transformableNode.setLocalRotation(Quaternion.eulerAngles(new Vector3(-90, 0, 0)));
-                                        Vector3 localPosition = transformableNode.getLocalPosition();
-                                        //transformableNode.setAnchor(augmentedImage.createAnchor(augmentedImage.getCenterPose()));
-                                        transformableNode.setLocalPosition(new Vector3(localPosition.x, localPosition.y, localPosition.z + 0.5f * augmentedImage.getExtentZ()));
-                                        transformableNode.setRenderable(viewRenderable);
-                                    }).exceptionally(throwable -> {
-                                Snackbar.with(this).setText("模型创建失败").show();
-                                return null;
-                            });
-                            augmentedImageMap.put(augmentedImage, node);
-                            this.arFragment.getArSceneView().getScene().addChild(node);
-                        } else if (mode == 2) {
-                            //视频展示
-                            AnchorNode node = new AnchorNode(augmentedImage.createAnchor(augmentedImage.getCenterPose()));
-
-                            // Create an ExternalTexture for displaying the contents of the video.
-                            ExternalTexture texture = new ExternalTexture();
-
-                            ViewRenderable.builder()
-                                    .setView(this, R.layout.renderable_video).build()
-                                    .thenAccept(viewRenderable -> {
-                                        SmartPickVideo smartPickVideo = viewRenderable.getView().findViewById(R.id.video_player);
-                                        smartPickVideo.setUp("http://vjs.zencdn.net/v/oceans.mp4", true, "");
-
-                                        smartPickVideo.startPlayLogic();
-                                        smartPickVideo.setVideoAllCallBack(new VideoOnPrepareCallBack() {
-                                            @Override
-                                            public void onPrepared(String url, Object... objects) {
-                                                smartPickVideo.setDisplay(texture.getSurface());
-                                            }
-                                        });
-                                        Node transformableNode = new Node();
-                                        transformableNode.setParent(node);
-                                        transformableNode.setLocalScale(new Vector3(0.2f, 0.2f, 1f));
-                                        transformableNode.setRenderable(viewRenderable);
-
-                                        ModelRenderable.builder()
-                                                .setSource(this, Uri.parse("models/chroma_key_video.sfb")).build()
-                                                .thenAccept(modelRenderable -> {
-                                                    modelRenderable.getMaterial().setExternalTexture("videoTexture", texture);
-                                                    modelRenderable.getMaterial().setFloat4("keyColor", CHROMA_KEY_COLOR);
-
-                                                    Node videoNode = new Node();
-                                                    videoNode.setParent(node);
-                                                    //这里缩放需要计算一下，目前写死
-                                                    videoNode.setLocalPosition(new Vector3(0, 0.062f, -0.00001f));
-                                                    videoNode.setLocalScale(new Vector3(0.271f, 0.115f, 1f));
-
-                                                    videoNode.setRenderable(modelRenderable);
-                                                }).exceptionally(throwable -> {
-                                            Snackbar.with(this).setText("模型创建失败").show();
-                                            return null;
-                                        });
-                                    }).exceptionally(throwable -> {
-                                Snackbar.with(this).setText("模型创建失败").show();
-                                return null;
-                            });
-                            augmentedImageMap.put(augmentedImage, node);
-                            this.arFragment.getArSceneView().getScene().addChild(node);
-                        } else if (mode == 3) {
-                            //视频展示(透明视频)
-                            AnchorNode node = new AnchorNode(augmentedImage.createAnchor(augmentedImage.getCenterPose()));
-
-                            // Create an ExternalTexture for displaying the contents of the video.
-                            ExternalTexture texture = new ExternalTexture();
-
-                            // Create an Android MediaPlayer to capture the video on the external texture's surface.
-                            MediaPlayer mediaPlayer = MediaPlayer.create(this, R.raw.lion_chroma);
-                            mediaPlayer.setSurface(texture.getSurface());
-                            mediaPlayer.setLooping(true);
-
-                            ModelRenderable.builder()
-                                    .setSource(this, Uri.parse("models/chroma_key_video.sfb")).build()
-                                    .thenAccept(modelRenderable -> {
-                                        modelRenderable.getMaterial().setExternalTexture("videoTexture", texture);
-                                        modelRenderable.getMaterial().setFloat4("keyColor", CHROMA_KEY_COLOR);
-
-                                        Node transformableNode = new Node();
-                                        transformableNode.setParent(node);
-                                        transformableNode.setLocalScale(new Vector3(0.2f, 0.2f, 0.2f));
-                                        transformableNode.setRenderable(modelRenderable);
-
-                                        if (!mediaPlayer.isPlaying()) {
-                                            mediaPlayer.start();
-                                        }
-                                    }).exceptionally(throwable -> {
-                                Snackbar.with(this).setText("模型创建失败").show();
-                                return null;
-                            });
-                            augmentedImageMap.put(augmentedImage, node);
-                            this.arFragment.getArSceneView().getScene().addChild(node);
-                        } else if (mode == 4) {
-                            //视频展示（不跟踪物体）
-                            Intent intent = new Intent(this, PlayPickActivity.class);
-                            intent.putExtra(PlayPickActivity.VIDEO_COVER, "https://img-blog.csdnimg.cn/20190301125255914.png?x-oss-process=image/watermark,type_ZmFuZ3poZW5naGVpdGk,shadow_10,text_aHR0cHM6Ly9ibG9nLmNzZG4ubmV0L3dlaXhpbl80MTAxMDE5OA==,size_16,color_FFFFFF,t_70");
-                            intent.putExtra(PlayPickActivity.VIDEO_URL, "http://vjs.zencdn.net/v/oceans.mp4");
-                            intent.putExtra(PlayPickActivity.VIDEO_AUTO_PLAY, true);
-                            startActivityForResult(intent, 0);
-                            augmentedImageMap.put(augmentedImage, new Node());
-                        }
-                    }
-                    break;
-
-                case STOPPED:
-                    augmentedImageMap.remove(augmentedImage);
-                    break;
+        // Nothing on this path may allocate unless an image changes state, see FrameAllocationProbe.
+        frameAllocationProbe.beginFrame();
+        long nowMs = SystemClock.uptimeMillis();
+        engine.beginFrame(nowMs);
+        GifTexturePlayer.getInstance().onFrame(nowMs);
+
+        frameAllocationProbe.pause();
+        Collection<AugmentedImage> updatedAugmentedImages;
+        if (modeSwitchedAtMs >= 0 && !rebound) {
+            // Images only tracked by their last known pose are not updated, bind all of them once.
+            rebound = true;
+            updatedAugmentedImages = arFragment.getArSceneView().getSession().getAllTrackables(AugmentedImage.class);
+        } else {
+            updatedAugmentedImages = frame.getUpdatedTrackables(AugmentedImage.class);
+        }
+        if (traceRecorder != null) {
+            // Recording allocates, the poses are read as objects.
+            traceRecorder.beginFrame(nowMs);
+            for (AugmentedImage augmentedImage : updatedAugmentedImages) {
+                traceRecorder.record(augmentedImage);
+            }
+        }
+        frameAllocationProbe.resume();
+        if (updatedAugmentedImages instanceof List) {
+            // Indexed access avoids allocating an iterator every frame.
+            List<AugmentedImage> images = (List<AugmentedImage>) updatedAugmentedImages;
+            for (int i = 0, size = images.size(); i < size; i++) {
+                engine.update(trackables.wrap(images.get(i)), nowMs);
+            }
+        } else {
+            for (AugmentedImage augmentedImage : updatedAugmentedImages) {
+                engine.update(trackables.wrap(augmentedImage), nowMs);
             }
         }
+        engine.endFrame(nowMs);
+        cullImages();
+        Metrics.ATTACHED_IMAGES.set(imageStates.getAttachedCount());
+        frameAllocationProbe.endFrame();
+    }
+
+    /**
+     * Re-arms the full screen video of an image once it is fully tracked after the video was closed.
+     */
+    private void onFullyTracked(int index, long nowMs) {
+        if (videoClosedAtMs >= 0) {
+            frameAllocationProbe.markTransition();
+            Log.d(TAG, "Time to first tracking after closing the video: " + (nowMs - videoClosedAtMs) + " ms");
+            videoClosedAtMs = -1;
+        }
+        Content content = imageStates.getSlot(index).getContent();
+        if (content instanceof FullscreenVideoContent) {
+            ((FullscreenVideoContent) content).onTrackingResumed();
+        }
+    }
+
+    /**
+     * Suspends the content of images that are outside the view or too small on screen to be worth
+     * rendering. Nodes of suspended images keep their last pose, which is good enough to tell when a
+     * static image comes back into view.
+     *
+     * <p>Visible images switch their content between detail levels by their size on screen.
+     */
+    private void cullImages() {
+        ArSceneView arSceneView = arFragment.getArSceneView();
+        imageCuller.beginFrame(arSceneView.getScene().getCamera(), arSceneView.getWidth(), arSceneView.getHeight());
+        boolean changed = false;
+        for (int i = 0, capacity = imageStates.getCapacity(); i < capacity; i++) {
+            ImageResources resources = imageStates.getSlot(i);
+            AnchorNode node = resources != null ? resources.getNode() : null;
+            if (node == null || node.getAnchor() == null) {
+                continue;
+            }
+            boolean culled = imageCuller.classify(node.getWorldModelMatrix(), imageStates.getExtentX(i),
+                    imageStates.getExtentZ(i), imageStates.isCulled(i)) != ImageCuller.VISIBLE;
+            if (imageStates.setCulled(i, culled, imageCuller.getLastCoveragePixels())) {
+                frameAllocationProbe.markTransition();
+                resources.setSuspended(ContentSlot.SUSPENDED_CULLED, culled);
+                changed = true;
+            }
+            if (!culled) {
+                int level = levelOfDetail.select(imageStates.getDetailLevel(i), imageCuller.getLastCoveragePixels());
+                if (imageStates.setDetailLevel(i, level)) {
+                    frameAllocationProbe.markTransition();
+                    resources.setDetailLevel(level);
+                }
+            }
+        }
+        if (changed) {
+            Log.d(TAG, "Culling: " + imageCuller);
+        }
+    }
+
+    /**
+     * Creates the content of images from the registry of the current show type and adds their nodes
+     * to the scene.
+     */
+    private final class ImageBinder implements TrackingEngine.Binder<ArTrackable, ImageResources> {
+        @Override
+        public Content prepare(ArTrackable trackable) {
+            ImageContent content = registry.create(trackable.getImage());
+            if (content != null) {
+                content.prepare(AugmentedImageActivity.this);
+            }
+            return content;
+        }
+
+        @Override
+        public ImageResources createSlot(ArTrackable trackable) {
+            return new ImageResources();
+        }
+
+        @Override
+        public void attach(ArTrackable trackable, Content content, ImageResources resources) {
+            ((ImageContent) content).attach(AugmentedImageActivity.this, trackable.getImage(), resources);
+            Metrics.CONTENT_ATTACHED.increment();
+            if (resources.getNode() != null) {
+                arFragment.getArSceneView().getScene().addChild(resources.getNode());
+            }
+        }
+    }
+
+    private final class ImageListener implements TrackingEngine.Listener<ArTrackable> {
+        @Override
+        public void onTransition() {
+            frameAllocationProbe.markTransition();
+        }
+
+        @Override
+        public void onTracking(ArTrackable trackable, long nowMs) {
+            if (!trackingSeen) {
+                trackingSeen = true;
+                StartupTrace.mark(StartupTrace.FIRST_TRACKING);
+                Log.d(TAG, "Time to first tracking: " + (nowMs - createdAtMs) + " ms after create, "
+                        + StartupTrace.dump());
+            }
+            // Have to switch to UI Thread to update View.
+            fitToScanView.setVisibility(View.GONE);
+        }
+
+        @Override
+        public void onFullyTracked(ArTrackable trackable, long nowMs) {
+            AugmentedImageActivity.this.onFullyTracked(trackable.getIndex(), nowMs);
+        }
+
+        @Override
+        public void onAttached(ArTrackable trackable, long nowMs) {
+            if (modeSwitchedAtMs >= 0) {
+                Log.d(TAG, "First content after switching show type in " + (nowMs - modeSwitchedAtMs) + " ms");
+                modeSwitchedAtMs = -1;
+            }
+        }
+
+        @Override
+        public void onStopped(int index, ContentSlot slot) {
+            Log.d(TAG, "Resources after image stopped: " + ResourceCounters.dump());
+        }
+    }
+
+    /**
+     * Culling result of the last frame.
+     */
+    ImageCuller getImageCuller() {
+        return imageCuller;
+    }
+
+    @Override
+    public AppCompatActivity getActivity() {
+        return this;
+    }
+
+    @Override
+    public AugmentedImageFragment getArFragment() {
+        return arFragment;
+    }
+
+    @Override
+    public MediaPlayerPool getChromaPlayerPool() {
+        return chromaPlayerPool;
+    }
+
+    @Override
+    public VideoAtlas getVideoAtlas() {
+        if (videoAtlas == null) {
+            // The sample has no mosaic video, every poster shows the whole lion video.
+            videoAtlas = new VideoAtlas(this, ATLAS_VIDEO_URL, 1, 1, ATLAS_TILE_ASPECT_RATIO);
+        }
+        return videoAtlas;
+    }
+
+    @Override
+    public int nextPlayerPriority() {
+        return ++playerRequestCount;
+    }
+
+    @Override
+    public void showContentError(Throwable throwable) {
+        Log.e(TAG, "Exception creating content", throwable);
+        Snackbar.with(this).setText("模型创建失败").show();
     }
 
     @Override
     protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
-        finish();
-        int mode = getIntent().getIntExtra("showType", 0);
-        Intent intent = new Intent(this, AugmentedImageActivity.class);
-        intent.putExtra("showType", mode);
-        startActivity(intent);
+        if (requestCode != FullscreenVideoContent.REQUEST_PLAY_VIDEO) {
+            return;
+        }
+        // The session, image database and scene are kept, the fragment resumes the session in place.
+        videoClosedAtMs = SystemClock.uptimeMillis();
+        for (int i = 0, capacity = imageStates.getCapacity(); i < capacity; i++) {
+            ImageResources resources = imageStates.getSlot(i);
+            if (resources != null && resources.getContent() instanceof FullscreenVideoContent) {
+                ((FullscreenVideoContent) resources.getContent()).onVideoClosed();
+            }
+        }
     }
 }
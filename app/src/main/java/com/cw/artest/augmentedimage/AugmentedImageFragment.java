@@ -16,34 +16,41 @@
 
 package com.cw.artest.augmentedimage;
 
-import android.app.ActivityManager;
 import android.content.Context;
-import android.content.res.AssetManager;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.lib.widget.snackbar.Snackbar;
-import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
+import android.util.Size;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 
+import com.cw.artest.metrics.Metrics;
+import com.google.ar.core.ArCoreApk;
+import com.google.ar.core.AugmentedImage;
 import com.google.ar.core.AugmentedImageDatabase;
+import com.google.ar.core.CameraConfig;
+import com.google.ar.core.CameraConfigFilter;
 import com.google.ar.core.Config;
+import com.google.ar.core.Frame;
 import com.google.ar.core.Session;
+import com.google.ar.core.TrackingState;
 import com.google.ar.core.exceptions.UnavailableApkTooOldException;
 import com.google.ar.core.exceptions.UnavailableArcoreNotInstalledException;
 import com.google.ar.core.exceptions.UnavailableDeviceNotCompatibleException;
 import com.google.ar.core.exceptions.UnavailableException;
 import com.google.ar.core.exceptions.UnavailableSdkTooOldException;
+import com.google.ar.sceneform.FrameTime;
 import com.google.ar.sceneform.ux.ArFragment;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 
 /**
  * Extend the ArFragment to customize the ARCore session configuration to include Augmented Images.
@@ -57,35 +64,87 @@ public class AugmentedImageFragment extends ArFragment {
     private static final String DEFAULT_IMAGE_NAME = "book.jpg";
 
     // This is a pre-created database containing the sample image.
-    private static final String SAMPLE_IMAGE_DATABASE = "images.imgdb";
+    static final String SAMPLE_IMAGE_DATABASE = "images.imgdb";
 
     // Augmented image configuration and rendering.
     // Load a single image (true) or a pre-generated image database (false).
     private static final boolean USE_SINGLE_IMAGE = false;
 
-    // Do a runtime check for the OpenGL level available at runtime to avoid Sceneform crashing the
-    // application.
-    private static final double MIN_OPENGL_VERSION = 3.0;
+    // Build the database at runtime from a folder of images in assets, see ImageDatabaseBuilder.
+    // Takes precedence over USE_SINGLE_IMAGE.
+    private static final boolean USE_IMAGE_CATALOG = false;
+    private static final String IMAGE_CATALOG_DIR = "images";
+
+    // Split a large catalog into several databases, one of which is active at a time, see
+    // ImageDatabaseShards. Takes precedence over the options above. The first shard is the pre-built
+    // sample database, which the pre-warm already loaded, the others are folders of images in assets.
+    private static final boolean USE_IMAGE_SHARDS = true;
+    private static final String[] IMAGE_SHARDS = {SAMPLE_IMAGE_DATABASE, "shards/book"};
+
+    // How often the shard policy is asked which shard should be active.
+    private static final long SHARD_POLICY_INTERVAL_MS = 500;
+    private static final long SHARD_DWELL_MS = 3000;
+    private static final long SHARD_HOLD_MS = 5000;
+
+    // Intent extra of the hosting activity, set to false to compare against the default ArFragment
+    // session configuration.
+    public static final String EXTRA_IMAGES_ONLY_PROFILE = "imagesOnlyProfile";
+
+    /**
+     * Notified on the main thread after another image database was configured in the session. The
+     * augmented images of the previous database will not be updated anymore.
+     */
+    public interface OnImageDatabaseChangedListener {
+        void onImageDatabaseChanged(String databaseName);
+    }
+
+    private OnImageDatabaseChangedListener onImageDatabaseChangedListener;
+    private ShardPolicy shardPolicy = new RecentMatchShardPolicy(SHARD_DWELL_MS, SHARD_HOLD_MS);
+    private ImageDatabaseShards shards;
+    private int activeShard = -1;
+    private int pendingShard = -1;
+    private long activeShardSinceMs;
+    private long activeShardSinceNs;
+    private boolean activeShardDetected;
+    private long lastMatchMs;
+    private long lastShardPolicyMs;
 
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
 
         // Check for Sceneform being supported on this device.  This check will be integrated into
-        // Sceneform eventually.
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+        // Sceneform eventually. Only runs once per process, see ArStartup.
+        ArStartup.Capabilities capabilities = ArStartup.getCapabilities(context);
+        if (!capabilities.isSdkSupported()) {
             Log.e(TAG, "Sceneform requires Android N or later");
             Snackbar.with(getActivity()).setText("Sceneform 需要 Android 7 或更高的版本").show();
         }
-
-        String openGlVersionString =
-                ((ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE))
-                        .getDeviceConfigurationInfo()
-                        .getGlEsVersion();
-        if (Double.parseDouble(openGlVersionString) < MIN_OPENGL_VERSION) {
+        if (!capabilities.isOpenGlSupported()) {
             Log.e(TAG, "Sceneform requires OpenGL ES 3.0 or later");
             Snackbar.with(getActivity()).setText("Sceneform 需要 OpenGL ES 3.0 或更高的版本").show();
         }
+        if (isDeviceUnsupported()) {
+            Log.e(TAG, "ARCore is not supported on this device");
+            Snackbar.with(getActivity()).setText("当前设备部不支持AR").show();
+        }
+    }
+
+    /**
+     * No session is created and ARCore is not installed on devices the pre-warm found unsupported.
+     * Otherwise ArFragment checks and requests the install itself, as the pre-warm leaves that to it.
+     */
+    @Override
+    protected boolean isArRequired() {
+        return !isDeviceUnsupported();
+    }
+
+    /**
+     * Returns true if the availability check of {@link ArStartup} found the device unsupported. False
+     * while the check runs or if it was not started.
+     */
+    private static boolean isDeviceUnsupported() {
+        return ArStartup.getAvailability() == ArCoreApk.Availability.UNSUPPORTED_DEVICE_NOT_CAPABLE;
     }
 
     @Override
@@ -97,6 +156,10 @@ public class AugmentedImageFragment extends ArFragment {
         getPlaneDiscoveryController().hide();
         getPlaneDiscoveryController().setInstructionView(null);
         getArSceneView().getPlaneRenderer().setEnabled(false);
+        if (isImagesOnlyProfile()) {
+            getArSceneView().setLightEstimationEnabled(false);
+        }
+        getArSceneView().getScene().addOnUpdateListener(this::onUpdateShards);
         return view;
     }
 
@@ -120,19 +183,65 @@ public class AugmentedImageFragment extends ArFragment {
     @Override
     protected Config getSessionConfiguration(Session session) {
         Config config = super.getSessionConfiguration(session);
-        if (!setupAugmentedImageDatabase(config, session)) {
-            Snackbar.with(getActivity()).setText("不能设置增强图像数据库").show();
+        if (isImagesOnlyProfile()) {
+            applyImagesOnlyProfile(config, session);
         }
+        setupAugmentedImageDatabase(session);
         return config;
     }
 
-    private boolean setupAugmentedImageDatabase(Config config, Session session) {
-        AugmentedImageDatabase augmentedImageDatabase;
+    /**
+     * Returns true when the session only tracks augmented images, see {@link #applyImagesOnlyProfile}.
+     */
+    public boolean isImagesOnlyProfile() {
+        return getActivity() == null
+                || getActivity().getIntent().getBooleanExtra(EXTRA_IMAGES_ONLY_PROFILE, true);
+    }
+
+    /**
+     * Turns off the ARCore subsystems that augmented images do not need and picks the cheapest camera
+     * config.
+     */
+    private void applyImagesOnlyProfile(Config config, Session session) {
+        // Planes are never rendered and the content is unlit video and views.
+        config.setPlaneFindingMode(Config.PlaneFindingMode.DISABLED);
+        config.setLightEstimationMode(Config.LightEstimationMode.DISABLED);
+        // Sceneform drives the session from its own frame callback and requires this mode.
+        config.setUpdateMode(Config.UpdateMode.LATEST_CAMERA_IMAGE);
+        // Posters are usually held close to the camera.
+        config.setFocusMode(Config.FocusMode.AUTO);
+
+        CameraConfigFilter filter = new CameraConfigFilter(session)
+                .setTargetFps(EnumSet.of(CameraConfig.TargetFps.TARGET_FPS_30))
+                .setDepthSensorUsage(EnumSet.of(CameraConfig.DepthSensorUsage.DO_NOT_USE));
+        List<CameraConfig> cameraConfigs = session.getSupportedCameraConfigs(filter);
+        if (cameraConfigs.isEmpty()) {
+            Log.w(TAG, "No 30 fps camera config without depth, keeping the default one.");
+            return;
+        }
+        // The smallest CPU image is the cheapest one to run image detection on.
+        CameraConfig cheapest = cameraConfigs.get(0);
+        for (CameraConfig cameraConfig : cameraConfigs) {
+            Size size = cameraConfig.getImageSize();
+            Size cheapestSize = cheapest.getImageSize();
+            if (size.getWidth() * size.getHeight() < cheapestSize.getWidth() * cheapestSize.getHeight()) {
+                cheapest = cameraConfig;
+            }
+        }
+        session.setCameraConfig(cheapest);
+    }
 
-        AssetManager assetManager = getContext() != null ? getContext().getAssets() : null;
-        if (assetManager == null) {
+    /**
+     * Loads the image database in the background and adds it to the session once ready, so creating
+     * the session is not blocked by it.
+     */
+    @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+    private void setupAugmentedImageDatabase(Session session) {
+        Context context = getContext();
+        if (context == null) {
             Log.e(TAG, "Context is null, cannot intitialize image database.");
-            return false;
+            Snackbar.with(getActivity()).setText("不能设置增强图像数据库").show();
+            return;
         }
 
         // There are two ways to configure an AugmentedImageDatabase:
@@ -141,38 +250,130 @@ public class AugmentedImageFragment extends ArFragment {
         // Option 2) has
         // * shorter setup time
         // * doesn't require images to be packaged in apk.
-        if (USE_SINGLE_IMAGE) {
-            Bitmap augmentedImageBitmap = loadAugmentedImageBitmap(assetManager);
-            if (augmentedImageBitmap == null) {
-                return false;
+        // Option 1) is only slow the first time, the built database is cached in app storage.
+        CompletableFuture<AugmentedImageDatabase> database;
+        if (USE_IMAGE_SHARDS) {
+            shards = new ImageDatabaseShards(context, session, IMAGE_SHARDS);
+            activeShard = -1;
+            activateShard(session, shardPolicy.selectShard(-1, shards.size(), 0, 0, SystemClock.uptimeMillis()));
+            return;
+        } else if (USE_IMAGE_CATALOG) {
+            database = ImageDatabaseBuilder.build(context, session, IMAGE_CATALOG_DIR);
+        } else if (USE_SINGLE_IMAGE) {
+            database = ImageDatabaseLoader.loadSingleImage(context, session, DEFAULT_IMAGE_NAME);
+        } else {
+            database = ImageDatabaseLoader.loadSerialized(context, session, SAMPLE_IMAGE_DATABASE);
+        }
+        Metrics.DATABASE_LOAD.time(database);
+        database.thenAcceptAsync(augmentedImageDatabase -> applyDatabase(session, augmentedImageDatabase),
+                ContextCompat.getMainExecutor(context)).exceptionally(this::onDatabaseError);
+    }
+
+    public void setShardPolicy(ShardPolicy shardPolicy) {
+        this.shardPolicy = shardPolicy;
+    }
+
+    public void setOnImageDatabaseChangedListener(OnImageDatabaseChangedListener listener) {
+        this.onImageDatabaseChangedListener = listener;
+    }
+
+    /**
+     * Asks the shard policy every {@link #SHARD_POLICY_INTERVAL_MS} whether another shard should be
+     * configured.
+     */
+    private void onUpdateShards(FrameTime frameTime) {
+        Session session = getArSceneView().getSession();
+        if (shards == null || session == null) {
+            return;
+        }
+        if (activeShard >= 0 && !activeShardDetected) {
+            recordShardDetection(getArSceneView().getArFrame());
+        }
+        long nowMs = SystemClock.uptimeMillis();
+        if (nowMs - lastShardPolicyMs < SHARD_POLICY_INTERVAL_MS) {
+            return;
+        }
+        lastShardPolicyMs = nowMs;
+
+        if (activeShard >= 0) {
+            for (AugmentedImage image : session.getAllTrackables(AugmentedImage.class)) {
+                if (image.getTrackingState() == TrackingState.TRACKING
+                        && image.getTrackingMethod() == AugmentedImage.TrackingMethod.FULL_TRACKING) {
+                    lastMatchMs = nowMs;
+                    break;
+                }
             }
+        }
+        int shard = shardPolicy.selectShard(activeShard, shards.size(), activeShardSinceMs, lastMatchMs, nowMs);
+        if (shard != activeShard && shard != pendingShard) {
+            activateShard(session, shard);
+        }
+    }
 
-            augmentedImageDatabase = new AugmentedImageDatabase(session);
-            augmentedImageDatabase.addImage(DEFAULT_IMAGE_NAME, augmentedImageBitmap);
-            // If the physical size of the image is known, you can instead use:
-            //     augmentedImageDatabase.addImage("image_name", augmentedImageBitmap, widthInMeters);
-            // This will improve the initial detection speed. ARCore will still actively estimate the
-            // physical size of the image as it is viewed from multiple viewpoints.
-        } else {
-            // This is an alternative way to initialize an AugmentedImageDatabase instance,
-            // load a pre-existing augmented image database.
-            try (InputStream is = getContext().getAssets().open(SAMPLE_IMAGE_DATABASE)) {
-                augmentedImageDatabase = AugmentedImageDatabase.deserialize(session, is);
-            } catch (IOException e) {
-                Log.e(TAG, "IO exception loading augmented image database.", e);
-                return false;
+    /**
+     * Records the detection latency of the active shard if {@code frame} holds its first detected
+     * image. Checked every frame, the policy interval would be too coarse for it.
+     */
+    private void recordShardDetection(@Nullable Frame frame) {
+        if (frame == null) {
+            return;
+        }
+        for (AugmentedImage image : frame.getUpdatedTrackables(AugmentedImage.class)) {
+            if (image.getTrackingState() == TrackingState.TRACKING
+                    && image.getTrackingMethod() == AugmentedImage.TrackingMethod.FULL_TRACKING) {
+                shards.getDetectionLatency(activeShard).recordSince(activeShardSinceNs);
+                activeShardDetected = true;
+                return;
             }
         }
+    }
+
+    @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+    private void activateShard(Session session, int shard) {
+        pendingShard = shard;
+        shards.get(shard).thenAcceptAsync(augmentedImageDatabase -> {
+            // A newer shard may have been requested while this one was loading.
+            if (pendingShard != shard || !applyDatabase(session, augmentedImageDatabase)) {
+                return;
+            }
+            pendingShard = -1;
+            activeShard = shard;
+            activeShardSinceMs = SystemClock.uptimeMillis();
+            activeShardSinceNs = System.nanoTime();
+            activeShardDetected = false;
+            lastMatchMs = 0;
+            Log.d(TAG, "Active image database shard: " + shards.getName(shard));
+            if (onImageDatabaseChangedListener != null) {
+                onImageDatabaseChangedListener.onImageDatabaseChanged(shards.getName(shard));
+            }
+        }, ContextCompat.getMainExecutor(requireContext())).exceptionally(throwable -> {
+            if (pendingShard == shard) {
+                pendingShard = -1;
+            }
+            return onDatabaseError(throwable);
+        });
+    }
 
+    /**
+     * Configures the database in the session, unless the session was replaced or destroyed while the
+     * database was loading.
+     */
+    private boolean applyDatabase(Session session, AugmentedImageDatabase augmentedImageDatabase) {
+        if (getArSceneView() == null || getArSceneView().getSession() != session) {
+            return false;
+        }
+        Config config = session.getConfig();
         config.setAugmentedImageDatabase(augmentedImageDatabase);
+        session.configure(config);
+        StartupTrace.mark(StartupTrace.DATABASE_CONFIGURED);
         return true;
     }
 
-    private Bitmap loadAugmentedImageBitmap(AssetManager assetManager) {
-        try (InputStream is = assetManager.open(DEFAULT_IMAGE_NAME)) {
-            return BitmapFactory.decodeStream(is);
-        } catch (IOException e) {
-            Log.e(TAG, "IO exception loading augmented image bitmap.", e);
+    private Void onDatabaseError(Throwable throwable) {
+        Log.e(TAG, "Exception loading augmented image database.", throwable);
+        if (getActivity() != null) {
+            getActivity().runOnUiThread(() ->
+                    Snackbar.with(getActivity()).setText("不能设置增强图像数据库").show());
         }
         return null;
     }
@@ -17,7 +17,6 @@
 package com.cw.artest.augmentedimage;
 
 import android.content.Context;
-import android.net.Uri;
 import android.util.Log;
 import android.view.MotionEvent;
 
@@ -28,11 +27,14 @@ import com.google.ar.sceneform.animation.ModelAnimator;
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.rendering.AnimationData;
 import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.Renderable;
 import com.google.ar.sceneform.ux.TransformableNode;
 import com.google.ar.sceneform.ux.TransformationSystem;
 
 import java.util.concurrent.CompletableFuture;
 
+import androidx.annotation.Nullable;
+
 /**
  * Node for rendering an augmented image. The image is framed by placing the virtual picture frame
  * at the corners of the augmented image trackable.
@@ -42,23 +44,33 @@ public class AugmentedImageNode extends AnchorNode {
 
     private static final String TAG = "AugmentedImageNode";
 
+    // Node setters copy their arguments, so constant vectors can be shared by all nodes.
+    private static final Vector3 SCALE = new Vector3(0.2f, 0.2f, 0.2f);
+
     // The augmented image represented by this node.
     private AugmentedImage image;
     private CompletableFuture<ModelRenderable> andy;
     private ModelRenderable renderable;
+    private TransformableNode andyNode;
+    private Renderable lowDetail;
+    private boolean active = true;
     private ModelAnimator animator;
     private int nextAnimation;
     private float x;
     private float y;
+    private boolean released;
 
     public AugmentedImageNode(Context context) {
         // Upon construction, start loading the models for the corners of the frame.
-        if (andy == null) {
-            andy = ModelRenderable.builder()
-                    .setSource(context, Uri.parse("models/andy_dance.sfb"))
-                    .build()
-                    .thenApply(renderable -> this.renderable = renderable);
-        }
+        this(RenderableCache.getInstance().load(context, RenderableCache.ANDY_DANCE));
+    }
+
+    /**
+     * Creates the node from a renderable that is already loading, e.g. one prepared while the image
+     * was still PAUSED.
+     */
+    public AugmentedImageNode(CompletableFuture<ModelRenderable> model) {
+        andy = model.thenApply(renderable -> this.renderable = renderable);
     }
 
     /**
@@ -69,6 +81,9 @@ public class AugmentedImageNode extends AnchorNode {
      */
     @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
     public void setImage(TransformationSystem transformationSystem, AugmentedImage image) {
+        if (released) {
+            return;
+        }
         this.image = image;
 
         if (!andy.isDone()) {
@@ -78,13 +93,15 @@ public class AugmentedImageNode extends AnchorNode {
                         Log.e(TAG, "Exception loading", throwable);
                         return null;
                     });
+            return;
         }
 
-        setLocalScale(new Vector3(0.2f, 0.2f, 0.2f));
+        setLocalScale(SCALE);
 
         TransformableNode andy = new TransformableNode(transformationSystem);
         andy.setParent(this);
-        andy.setRenderable(renderable);
+        andy.setRenderable(lowDetail != null ? lowDetail : renderable);
+        andyNode = andy;
         andy.setOnTouchListener(new OnTouchListener() {
             @Override
             public boolean onTouch(HitTestResult hitTestResult, MotionEvent motionEvent) {
@@ -103,9 +120,58 @@ public class AugmentedImageNode extends AnchorNode {
 
         // Set the anchor based on the center of the image.
         setAnchor(image.createAnchor(image.getCenterPose()));
+        ResourceCounters.ANCHORS.incrementAndGet();
+    }
+
+    /**
+     * Stops the animation and prevents a pending {@link #setImage} from attaching anything. The
+     * anchor itself is detached by the owning {@link ImageResources}.
+     */
+    public void release() {
+        released = true;
+        if (animator != null && animator.isRunning()) {
+            animator.end();
+        }
+        animator = null;
+    }
+
+    /**
+     * Pauses the running animation while the image is not fully tracked, and resumes it where it
+     * left off.
+     */
+    public void setActive(boolean active) {
+        this.active = active;
+        updateAnimator();
+    }
+
+    /**
+     * Shows {@code lowDetail}, e.g. a billboard, instead of the model while the image is small on
+     * screen, or the model again if null. The animation is paused meanwhile.
+     */
+    public void setLowDetail(@Nullable Renderable lowDetail) {
+        this.lowDetail = lowDetail;
+        if (andyNode != null) {
+            andyNode.setRenderable(lowDetail != null ? lowDetail : renderable);
+        }
+        updateAnimator();
+    }
+
+    private void updateAnimator() {
+        if (animator == null) {
+            return;
+        }
+        boolean run = active && lowDetail == null;
+        if (!run && animator.isRunning() && !animator.isPaused()) {
+            animator.pause();
+        } else if (run && animator.isPaused()) {
+            animator.resume();
+        }
     }
 
     public void onPlayAnimation() {
+        if (lowDetail != null) {
+            return;
+        }
         if (animator == null || !animator.isRunning()) {
             AnimationData data = renderable.getAnimationData(nextAnimation);
             nextAnimation = (nextAnimation + 1) % renderable.getAnimationDataCount();
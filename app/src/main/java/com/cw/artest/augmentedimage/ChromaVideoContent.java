@@ -0,0 +1,128 @@
+package com.cw.artest.augmentedimage;
+
+import android.media.MediaPlayer;
+
+import com.cw.artest.tracking.LevelOfDetail;
+import com.cw.artest.video.MediaPlayerPool;
+import com.google.ar.core.AugmentedImage;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.ExternalTexture;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 视频展示(透明视频): the lion video with its green background keyed out, played by a player leased
+ * from the host's {@link MediaPlayerPool}.
+ */
+@SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+class ChromaVideoContent implements ImageContent {
+
+    // The color to filter out of the video.
+    static final Color CHROMA_KEY_COLOR = new Color(0.1843f, 1.0f, 0.098f);
+
+    private static final Vector3 SCALE = new Vector3(0.2f, 0.2f, 0.2f);
+
+    // Lowers the decoder priority of small images below that of any large one.
+    private static final int LOW_DETAIL_PRIORITY_OFFSET = 1 << 20;
+
+    private ExternalTexture texture;
+    private CompletableFuture<ModelRenderable> model;
+    private boolean attached;
+    private boolean active = true;
+    private MediaPlayerPool.Lease lease;
+    private int priority;
+
+    @Override
+    public void prepare(ContentHost host) {
+        texture = new ExternalTexture();
+        ResourceCounters.TEXTURES.incrementAndGet();
+        // The MediaPlayer is leased from the pool once the image is tracked.
+        model = RenderableCache.getInstance().load(host.getActivity(), RenderableCache.CHROMA_KEY_VIDEO);
+    }
+
+    @Override
+    public void attach(ContentHost host, AugmentedImage image, ImageResources resources) {
+        attached = true;
+        AnchorNode node = new AnchorNode(image.createAnchor(image.getCenterPose()));
+        ResourceCounters.ANCHORS.incrementAndGet();
+        resources.setNode(node);
+        resources.setTexture(texture);
+
+        // Hidden until the pool binds a player to the texture.
+        Node transformableNode = new Node();
+        transformableNode.setParent(node);
+        transformableNode.setLocalScale(SCALE);
+        transformableNode.setEnabled(false);
+
+        // Newer detections win when all decoders are in use.
+        priority = host.nextPlayerPriority();
+        lease = host.getChromaPlayerPool().request(texture.getSurface(),
+                priority, new MediaPlayerPool.Listener() {
+                    @Override
+                    public void onPlayerAssigned(MediaPlayer player) {
+                        transformableNode.setEnabled(true);
+                        if (active) {
+                            player.start();
+                        }
+                    }
+
+                    @Override
+                    public void onPlayerRevoked(MediaPlayer player) {
+                        transformableNode.setEnabled(false);
+                    }
+                });
+        resources.setPlayerLease(lease);
+
+        model.thenAccept(modelRenderable -> {
+            if (resources.isReleased()) {
+                return;
+            }
+            modelRenderable.getMaterial().setExternalTexture("videoTexture", texture);
+            modelRenderable.getMaterial().setFloat4("keyColor", CHROMA_KEY_COLOR);
+            transformableNode.setRenderable(modelRenderable);
+        }).exceptionally(throwable -> {
+            host.showContentError(throwable);
+            return null;
+        });
+    }
+
+    @Override
+    public void setActive(boolean active) {
+        this.active = active;
+        MediaPlayer player = lease != null ? lease.getPlayer() : null;
+        if (player == null) {
+            return;
+        }
+        // Keeps the decoder, so resuming does not have to wait for another prepare.
+        if (active) {
+            player.start();
+        } else if (player.isPlaying()) {
+            player.pause();
+        }
+    }
+
+    /**
+     * There is only one stream, so instead of decoding a smaller one, small images give up their
+     * player first when all decoders are in use.
+     */
+    @Override
+    public void setDetailLevel(int level) {
+        if (lease != null) {
+            lease.setPriority(level == LevelOfDetail.HIGH ? priority : priority - LOW_DETAIL_PRIORITY_OFFSET);
+        }
+    }
+
+    @Override
+    public void release() {
+        model.cancel(false);
+        // Once attached the texture is released by the image resources.
+        if (!attached) {
+            texture.getSurface().release();
+            ResourceCounters.TEXTURES.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.cw.artest.augmentedimage;
+
+/**
+ * Creates the {@link ImageContent} of a newly detected image.
+ */
+interface ContentFactory {
+
+    ImageContent create();
+}
@@ -0,0 +1,32 @@
+package com.cw.artest.augmentedimage;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.cw.artest.video.MediaPlayerPool;
+
+/**
+ * What {@link ImageContent} needs from the activity hosting the AR scene.
+ */
+interface ContentHost {
+
+    AppCompatActivity getActivity();
+
+    AugmentedImageFragment getArFragment();
+
+    MediaPlayerPool getChromaPlayerPool();
+
+    /**
+     * The video shared by every {@link AtlasVideoContent}, created on first use.
+     */
+    VideoAtlas getVideoAtlas();
+
+    /**
+     * Returns a player priority higher than any returned before, so newer detections win.
+     */
+    int nextPlayerPriority();
+
+    /**
+     * Tells the user that content could not be created.
+     */
+    void showContentError(Throwable throwable);
+}
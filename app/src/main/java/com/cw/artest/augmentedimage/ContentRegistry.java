@@ -0,0 +1,123 @@
+package com.cw.artest.augmentedimage;
+
+import com.google.ar.core.AugmentedImage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps each image of the database to the factory of its content, by index or by name, falling back to
+ * a default factory.
+ *
+ * <p>The factory of an image is resolved once and then looked up by index in an array, so lookups on
+ * the frame path are O(1) and do not read the image name again.
+ */
+final class ContentRegistry {
+
+    private static final ContentFactory[] EMPTY = new ContentFactory[0];
+
+    private final Map<String, ContentFactory> byName = new HashMap<>();
+    private ContentFactory[] byIndex = EMPTY;
+    private ContentFactory[] resolved = EMPTY;
+    private ContentFactory defaultFactory;
+
+    /**
+     * Returns a registry showing the same content on every image, as selected by the show type of the
+     * menu.
+     */
+    static ContentRegistry forShowType(int showType, boolean headlessVideo) {
+        ContentRegistry registry = new ContentRegistry();
+        registry.setDefault(factoryForShowType(showType, headlessVideo));
+        return registry;
+    }
+
+    /**
+     * @param headlessVideo whether videos are decoded straight into a texture instead of through a
+     *                      player view, see {@link TextureVideoContent}.
+     */
+    static ContentFactory factoryForShowType(int showType, boolean headlessVideo) {
+        switch (showType) {
+            case 1:
+                //图片展示
+                return GifImageContent::new;
+            case 2:
+                //视频展示
+                return headlessVideo ? TextureVideoContent::new : WebVideoContent::new;
+            case 3:
+                //视频展示(透明视频)
+                return ChromaVideoContent::new;
+            case 4:
+                //视频展示（不跟踪物体）
+                return FullscreenVideoContent::new;
+            case 5:
+                //视频展示(共享解码)
+                return AtlasVideoContent::new;
+            case 0:
+            default:
+                //模型展示
+                return ModelContent::new;
+        }
+    }
+
+    ContentRegistry setDefault(ContentFactory factory) {
+        defaultFactory = factory;
+        invalidate();
+        return this;
+    }
+
+    ContentRegistry register(int imageIndex, ContentFactory factory) {
+        byIndex = ensureCapacity(byIndex, imageIndex);
+        byIndex[imageIndex] = factory;
+        invalidate();
+        return this;
+    }
+
+    ContentRegistry register(String imageName, ContentFactory factory) {
+        byName.put(imageName, factory);
+        invalidate();
+        return this;
+    }
+
+    /**
+     * Creates the content of {@code image}, or returns null if there is no factory for it.
+     */
+    ImageContent create(AugmentedImage image) {
+        ContentFactory factory = lookup(image);
+        return factory != null ? factory.create() : null;
+    }
+
+    ContentFactory lookup(AugmentedImage image) {
+        int index = image.getIndex();
+        if (index < resolved.length && resolved[index] != null) {
+            return resolved[index];
+        }
+        ContentFactory factory = index < byIndex.length ? byIndex[index] : null;
+        if (factory == null && !byName.isEmpty()) {
+            factory = byName.get(image.getName());
+        }
+        if (factory == null) {
+            factory = defaultFactory;
+        }
+        if (factory != null) {
+            resolved = ensureCapacity(resolved, index);
+            resolved[index] = factory;
+        }
+        return factory;
+    }
+
+    /**
+     * Forgets resolved factories, e.g. after another database made the image indices mean other
+     * images.
+     */
+    void invalidate() {
+        Arrays.fill(resolved, null);
+    }
+
+    private static ContentFactory[] ensureCapacity(ContentFactory[] array, int index) {
+        if (index < array.length) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(index + 1, array.length * 2));
+    }
+}
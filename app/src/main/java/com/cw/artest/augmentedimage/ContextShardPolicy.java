@@ -0,0 +1,22 @@
+package com.cw.artest.augmentedimage;
+
+/**
+ * Keeps the shard the app selected, e.g. from the screen or location the user is in.
+ */
+public class ContextShardPolicy implements ShardPolicy {
+
+    private volatile int shard;
+
+    public ContextShardPolicy(int shard) {
+        this.shard = shard;
+    }
+
+    public void setShard(int shard) {
+        this.shard = shard;
+    }
+
+    @Override
+    public int selectShard(int activeShard, int shardCount, long activeSinceMs, long lastMatchMs, long nowMs) {
+        return Math.max(0, Math.min(shard, shardCount - 1));
+    }
+}
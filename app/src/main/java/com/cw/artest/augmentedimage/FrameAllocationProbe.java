@@ -0,0 +1,103 @@
+package com.cw.artest.augmentedimage;
+
+import android.os.Debug;
+import android.util.Log;
+
+/**
+ * Counts the objects the main thread allocates in the frame callback and warns about steady-state
+ * frames, i.e. frames in which no image changed state, that allocate at all. Only enabled in debug
+ * builds, allocation counting slows down the runtime.
+ *
+ * <p>Allocations made inside ARCore, e.g. the collection returned by
+ * {@link com.google.ar.core.Frame#getUpdatedTrackables}, are excluded with {@link #pause()} and
+ * {@link #resume()} since they cannot be avoided from the app.
+ *
+ * <p>The engine part of the frame is checked on every build by TrackingEngineAllocationTest in
+ * tracking-core, this probe adds the Sceneform and culling part on the device.
+ */
+@SuppressWarnings("deprecation")
+class FrameAllocationProbe {
+
+    private static final String TAG = "FrameAllocationProbe";
+
+    // Frames skipped after start, while the scene is still being set up.
+    private static final int WARM_UP_FRAMES = 120;
+
+    private final boolean enabled;
+
+    private int frames;
+    private int frameStartCount;
+    private int pausedAtCount;
+    private int excludedCount;
+    private boolean transition;
+    private long steadyFrames;
+    private long allocatingFrames;
+
+    FrameAllocationProbe(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled) {
+            Debug.startAllocCounting();
+        }
+    }
+
+    void beginFrame() {
+        if (!enabled) {
+            return;
+        }
+        excludedCount = 0;
+        transition = false;
+        frameStartCount = Debug.getThreadAllocCount();
+    }
+
+    /**
+     * Stops counting allocations that are not made by the app.
+     */
+    void pause() {
+        if (enabled) {
+            pausedAtCount = Debug.getThreadAllocCount();
+        }
+    }
+
+    void resume() {
+        if (enabled) {
+            excludedCount += Debug.getThreadAllocCount() - pausedAtCount;
+        }
+    }
+
+    /**
+     * Marks the current frame as one in which content is attached or released, which allocates.
+     */
+    void markTransition() {
+        transition = true;
+    }
+
+    void endFrame() {
+        if (!enabled) {
+            return;
+        }
+        int allocations = Debug.getThreadAllocCount() - frameStartCount - excludedCount;
+        if (transition || ++frames <= WARM_UP_FRAMES) {
+            return;
+        }
+        steadyFrames++;
+        if (allocations > 0) {
+            allocatingFrames++;
+            Log.w(TAG, allocations + " allocations in steady-state frame, " + allocatingFrames + " of "
+                    + steadyFrames + " frames allocated");
+        }
+    }
+
+    /**
+     * Number of steady-state frames that allocated, zero if the frame path is allocation free.
+     */
+    long getAllocatingFrames() {
+        return allocatingFrames;
+    }
+
+    void stop() {
+        if (enabled) {
+            Debug.stopAllocCounting();
+            Log.i(TAG, allocatingFrames + " of " + steadyFrames + " steady-state frames allocated");
+        }
+    }
+}
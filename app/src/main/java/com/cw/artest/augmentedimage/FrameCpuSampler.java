@@ -0,0 +1,50 @@
+package com.cw.artest.augmentedimage;
+
+import android.os.Debug;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Logs the average CPU time spent per frame over a window of frames, for the whole process (ARCore
+ * does most of its work on its own threads) and for the main thread, and the average frame interval.
+ * Sceneform has no GPU timer, GPU load only shows as a longer frame interval.
+ */
+class FrameCpuSampler {
+
+    private static final String TAG = "FrameCpuSampler";
+
+    private final String label;
+    private final int windowFrames;
+
+    private int frames;
+    private long windowStartProcessMs;
+    private long windowStartThreadNs;
+    private float windowSeconds;
+
+    FrameCpuSampler(String label, int windowFrames) {
+        this.label = label;
+        this.windowFrames = windowFrames;
+    }
+
+    /**
+     * Must be called once per frame on the main thread.
+     */
+    void onFrame(float deltaSeconds) {
+        if (frames == 0) {
+            windowStartProcessMs = Process.getElapsedCpuTime();
+            windowStartThreadNs = Debug.threadCpuTimeNanos();
+            windowSeconds = 0;
+        } else {
+            windowSeconds += deltaSeconds;
+        }
+        if (++frames <= windowFrames) {
+            return;
+        }
+        long processMs = Process.getElapsedCpuTime() - windowStartProcessMs;
+        long threadNs = Debug.threadCpuTimeNanos() - windowStartThreadNs;
+        Log.i(TAG, String.format("%s: process %.2f ms/frame, main thread %.2f ms/frame, interval %.2f ms over %d frames",
+                label, (float) processMs / windowFrames, threadNs / 1e6f / windowFrames,
+                windowSeconds * 1000 / windowFrames, windowFrames));
+        frames = 0;
+    }
+}
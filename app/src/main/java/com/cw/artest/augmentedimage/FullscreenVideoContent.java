@@ -0,0 +1,92 @@
+package com.cw.artest.augmentedimage;
+
+import android.content.Intent;
+
+import com.cw.artest.video.PlayPickActivity;
+import com.cw.artest.video.cache.VideoCaches;
+import com.google.ar.core.AugmentedImage;
+
+/**
+ * 视频展示（不跟踪物体）: opens the video in {@link PlayPickActivity} instead of placing anything in
+ * the scene.
+ *
+ * <p>The AR session is kept while the video plays. Once the video is closed, the video opens again
+ * only after the image was tracked, then lost, then found again, so pointing the camera at the same
+ * image after closing does not reopen it right away.
+ */
+class FullscreenVideoContent implements ImageContent {
+
+    static final String VIDEO_COVER_URL = "https://img-blog.csdnimg.cn/20190301125255914.png?x-oss-process=image/watermark,type_ZmFuZ3poZW5naGVpdGk,shadow_10,text_aHR0cHM6Ly9ibG9nLmNzZG4ubmV0L3dlaXhpbl80MTAxMDE5OA==,size_16,color_FFFFFF,t_70";
+
+    static final int REQUEST_PLAY_VIDEO = 1;
+
+    // The video is open.
+    private static final int STATE_PLAYING = 0;
+    // The video was closed, waiting for the image to be fully tracked again after the session resumed.
+    private static final int STATE_RETURNED = 1;
+    // The image is tracked, the video opens again once it is lost and found again.
+    private static final int STATE_SHOWN = 2;
+    // The image was lost, the video opens as soon as it is tracked again.
+    private static final int STATE_ARMED = 3;
+
+    private ContentHost host;
+    private int state = STATE_PLAYING;
+
+    @Override
+    public void prepare(ContentHost host) {
+        // So the player opens warm.
+        VideoCaches.prefetch(host.getActivity(), WebVideoContent.VIDEO_URL, WebVideoContent.PREFETCH_SECONDS);
+    }
+
+    @Override
+    public void attach(ContentHost host, AugmentedImage image, ImageResources resources) {
+        this.host = host;
+        play();
+    }
+
+    /**
+     * The video was closed and the AR session resumes.
+     */
+    void onVideoClosed() {
+        if (state == STATE_PLAYING) {
+            state = STATE_RETURNED;
+        }
+    }
+
+    /**
+     * The image is fully tracked for the first time since the session resumed.
+     */
+    void onTrackingResumed() {
+        if (state == STATE_RETURNED) {
+            state = STATE_SHOWN;
+        }
+    }
+
+    private void play() {
+        state = STATE_PLAYING;
+        Intent intent = new Intent(host.getActivity(), PlayPickActivity.class);
+        intent.putExtra(PlayPickActivity.VIDEO_COVER, VIDEO_COVER_URL);
+        intent.putExtra(PlayPickActivity.VIDEO_URL, WebVideoContent.VIDEO_URL);
+        intent.putExtra(PlayPickActivity.VIDEO_AUTO_PLAY, true);
+        host.getActivity().startActivityForResult(intent, REQUEST_PLAY_VIDEO);
+    }
+
+    @Override
+    public void setActive(boolean active) {
+        // Nothing is shown in the scene, tracking only re-arms the video.
+        if (!active && state == STATE_SHOWN) {
+            state = STATE_ARMED;
+        } else if (active && state == STATE_ARMED) {
+            play();
+        }
+    }
+
+    @Override
+    public void setDetailLevel(int level) {
+        // The video is played full screen.
+    }
+
+    @Override
+    public void release() {
+    }
+}
@@ -0,0 +1,111 @@
+package com.cw.artest.augmentedimage;
+
+import com.cw.artest.gif.GifTexture;
+import com.cw.artest.gif.GifTexturePlayer;
+import com.cw.artest.tracking.LevelOfDetail;
+import com.google.ar.core.AugmentedImage;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 图片展示: an animated GIF lying on the image, drawn into a texture shared by every image showing
+ * the same GIF, see {@link GifTexturePlayer}.
+ */
+@SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+class GifImageContent implements ImageContent {
+
+    static final String GIF_ASSET = "earth.gif";
+
+    // Drawn behind transparent pixels and keyed out, the GIF itself has green in it.
+    private static final Color GIF_KEY_COLOR = new Color(1.0f, 0.0f, 1.0f);
+
+    // Lays the quad down on the image, extending from the far edge.
+    private static final Quaternion ROTATION = Quaternion.eulerAngles(new Vector3(-90, 0, 0));
+
+    private GifTexture gif;
+    private CompletableFuture<ModelRenderable> model;
+    private boolean active = true;
+    private int detailLevel = LevelOfDetail.HIGH;
+    private boolean animating;
+
+    @Override
+    public void prepare(ContentHost host) {
+        gif = GifTexturePlayer.getInstance().acquire(host.getActivity(), GIF_ASSET, GIF_KEY_COLOR);
+        model = RenderableCache.getInstance().load(host.getActivity(), RenderableCache.CHROMA_KEY_VIDEO);
+        updateAnimation();
+    }
+
+    @Override
+    public void attach(ContentHost host, AugmentedImage image, ImageResources resources) {
+        AnchorNode node = new AnchorNode(image.createAnchor(image.getCenterPose()));
+        ResourceCounters.ANCHORS.incrementAndGet();
+        resources.setNode(node);
+        float extentX = image.getExtentX();
+        float extentZ = image.getExtentZ();
+        gif.whenReady().thenCombine(model, (gifTexture, modelRenderable) -> {
+            if (resources.isReleased()) {
+                return null;
+            }
+            modelRenderable.getMaterial().setExternalTexture("videoTexture", gifTexture.getTexture());
+            modelRenderable.getMaterial().setFloat4("keyColor", GIF_KEY_COLOR);
+
+            Node gifNode = new Node();
+            gifNode.setParent(node);
+            gifNode.setLocalRotation(ROTATION);
+            // A new node sits at the origin of its parent.
+            gifNode.setLocalPosition(new Vector3(0, 0, 0.5f * extentZ));
+            // The quad is one meter wide and high, cover the width of the image.
+            gifNode.setLocalScale(new Vector3(extentX, extentX / gifTexture.getAspectRatio(), 1f));
+            gifNode.setRenderable(modelRenderable);
+            return null;
+        }).exceptionally(throwable -> {
+            host.showContentError(throwable);
+            return null;
+        });
+    }
+
+    @Override
+    public void setActive(boolean active) {
+        this.active = active;
+        updateAnimation();
+    }
+
+    /**
+     * A small GIF is shown as a still image. The texture keeps animating as long as another image
+     * shows the GIF large.
+     */
+    @Override
+    public void setDetailLevel(int level) {
+        detailLevel = level;
+        updateAnimation();
+    }
+
+    private void updateAnimation() {
+        boolean animate = gif != null && active && detailLevel == LevelOfDetail.HIGH;
+        if (animate == animating) {
+            return;
+        }
+        animating = animate;
+        if (animate) {
+            gif.addActiveUser();
+        } else {
+            gif.removeActiveUser();
+        }
+    }
+
+    @Override
+    public void release() {
+        model.cancel(false);
+        if (animating) {
+            gif.removeActiveUser();
+            animating = false;
+        }
+        GifTexturePlayer.getInstance().release(gif);
+    }
+}
@@ -0,0 +1,24 @@
+package com.cw.artest.augmentedimage;
+
+import com.cw.artest.tracking.Content;
+import com.google.ar.core.AugmentedImage;
+
+/**
+ * Content shown on one augmented image, created by a {@link ContentFactory} registered in the
+ * {@link ContentRegistry}.
+ *
+ * <p>{@link #prepare} is called once, possibly while the image is only PAUSED, and should start
+ * everything that takes time. {@link #attach} is called once tracking starts. {@link #release} is
+ * called exactly once, whether or not the content was attached. Suspending and detail levels are
+ * driven by the {@link com.cw.artest.tracking.TrackingEngine}, see {@link Content}.
+ */
+interface ImageContent extends Content {
+
+    void prepare(ContentHost host);
+
+    /**
+     * Builds the node tree of the content and hands it to {@code resources}. The owner adds
+     * {@link ImageResources#getNode()} to the scene.
+     */
+    void attach(ContentHost host, AugmentedImage image, ImageResources resources);
+}
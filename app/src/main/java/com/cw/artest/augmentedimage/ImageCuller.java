@@ -0,0 +1,160 @@
+package com.cw.artest.augmentedimage;
+
+import com.google.ar.sceneform.Camera;
+import com.google.ar.sceneform.math.Matrix;
+
+/**
+ * Decides per frame whether the content of an augmented image is worth rendering, by projecting the
+ * four corners of the image into screen space.
+ *
+ * <p>Images entirely outside the view frustum, or covering fewer than {@code minCoveragePixels}, are
+ * culled. A culled image has to cover {@link #UNCULL_FACTOR} times the threshold before it is shown
+ * again, so an image right at the threshold does not flicker.
+ *
+ * <p>All work is done in preallocated arrays, nothing is allocated per frame.
+ */
+final class ImageCuller {
+
+    static final int VISIBLE = 0;
+    static final int CULLED_FRUSTUM = 1;
+    static final int CULLED_COVERAGE = 2;
+
+    private static final float UNCULL_FACTOR = 1.5f;
+
+    private final float minCoveragePixels;
+
+    private final float[] viewProjection = new float[16];
+    private final float[] screenX = new float[4];
+    private final float[] screenY = new float[4];
+    private int widthPx;
+    private int heightPx;
+    private float lastCoveragePixels;
+
+    // Result of the current frame.
+    private int visibleCount;
+    private int frustumCulledCount;
+    private int coverageCulledCount;
+
+    ImageCuller(float minCoveragePixels) {
+        this.minCoveragePixels = minCoveragePixels;
+    }
+
+    /**
+     * Must be called once per frame before {@link #classify}.
+     */
+    void beginFrame(Camera camera, int widthPx, int heightPx) {
+        this.widthPx = widthPx;
+        this.heightPx = heightPx;
+        android.opengl.Matrix.multiplyMM(viewProjection, 0,
+                camera.getProjectionMatrix().data, 0, camera.getViewMatrix().data, 0);
+        visibleCount = 0;
+        frustumCulledCount = 0;
+        coverageCulledCount = 0;
+    }
+
+    /**
+     * Classifies an image of the given size whose center is at the origin of {@code worldModel}, the
+     * world matrix of its anchor node. Scale in the matrix is ignored, only the extents count.
+     */
+    int classify(Matrix worldModel, float extentX, float extentZ, boolean wasCulled) {
+        float[] m = worldModel.data;
+        // Unit axes of the node, without the scale of the node itself.
+        float xLength = length(m[0], m[1], m[2]);
+        float zLength = length(m[8], m[9], m[10]);
+        float halfX = xLength > 0 ? 0.5f * extentX / xLength : 0;
+        float halfZ = zLength > 0 ? 0.5f * extentZ / zLength : 0;
+
+        int behind = 0;
+        int left = 0;
+        int right = 0;
+        int below = 0;
+        int above = 0;
+        for (int corner = 0; corner < 4; corner++) {
+            float localX = (corner & 1) == 0 ? -halfX : halfX;
+            float localZ = corner < 2 ? -halfZ : halfZ;
+            float worldX = m[12] + m[0] * localX + m[8] * localZ;
+            float worldY = m[13] + m[1] * localX + m[9] * localZ;
+            float worldZ = m[14] + m[2] * localX + m[10] * localZ;
+
+            float[] vp = viewProjection;
+            float clipX = vp[0] * worldX + vp[4] * worldY + vp[8] * worldZ + vp[12];
+            float clipY = vp[1] * worldX + vp[5] * worldY + vp[9] * worldZ + vp[13];
+            float clipW = vp[3] * worldX + vp[7] * worldY + vp[11] * worldZ + vp[15];
+            if (clipW <= 0) {
+                behind++;
+                continue;
+            }
+            float ndcX = clipX / clipW;
+            float ndcY = clipY / clipW;
+            if (ndcX < -1) {
+                left++;
+            } else if (ndcX > 1) {
+                right++;
+            }
+            if (ndcY < -1) {
+                below++;
+            } else if (ndcY > 1) {
+                above++;
+            }
+            screenX[corner] = (ndcX + 1) * 0.5f * widthPx;
+            screenY[corner] = (ndcY + 1) * 0.5f * heightPx;
+        }
+
+        if (behind == 4 || left == 4 || right == 4 || below == 4 || above == 4) {
+            lastCoveragePixels = 0;
+            frustumCulledCount++;
+            return CULLED_FRUSTUM;
+        }
+        if (behind > 0) {
+            // Crossing the near plane, i.e. very close to the camera.
+            lastCoveragePixels = widthPx * heightPx;
+            visibleCount++;
+            return VISIBLE;
+        }
+
+        // Corners 0, 1, 3, 2 go around the quad.
+        lastCoveragePixels = 0.5f * Math.abs(
+                cross(0, 1) + cross(1, 3) + cross(3, 2) + cross(2, 0));
+        float threshold = wasCulled ? minCoveragePixels * UNCULL_FACTOR : minCoveragePixels;
+        if (lastCoveragePixels < threshold) {
+            coverageCulledCount++;
+            return CULLED_COVERAGE;
+        }
+        visibleCount++;
+        return VISIBLE;
+    }
+
+    /**
+     * Projected area in pixels of the image last passed to {@link #classify}, off-screen parts
+     * included.
+     */
+    float getLastCoveragePixels() {
+        return lastCoveragePixels;
+    }
+
+    int getVisibleCount() {
+        return visibleCount;
+    }
+
+    int getFrustumCulledCount() {
+        return frustumCulledCount;
+    }
+
+    int getCoverageCulledCount() {
+        return coverageCulledCount;
+    }
+
+    @Override
+    public String toString() {
+        return "visible " + visibleCount + ", outside frustum " + frustumCulledCount
+                + ", too small " + coverageCulledCount;
+    }
+
+    private float cross(int a, int b) {
+        return screenX[a] * screenY[b] - screenX[b] * screenY[a];
+    }
+
+    private static float length(float x, float y, float z) {
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+}
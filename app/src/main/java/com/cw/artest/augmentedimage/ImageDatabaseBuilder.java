@@ -0,0 +1,303 @@
+package com.cw.artest.augmentedimage;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.ar.core.AugmentedImageDatabase;
+import com.google.ar.core.Session;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds an {@link AugmentedImageDatabase} from a folder of target images in assets.
+ *
+ * <p>The folder may contain a {@code manifest.txt} with one image per line, optionally followed by its
+ * physical width in meters, e.g. {@code poster.jpg, 0.42}. Lines starting with {@code #} are ignored.
+ * Without a manifest every file in the folder is added without a width.
+ *
+ * <p>Images are decoded in parallel, downsampled to at most {@link #MAX_IMAGE_SIZE} pixels on the
+ * longest side, which is plenty for ARCore's feature extraction, but never below
+ * {@link #MIN_IMAGE_SIZE} pixels on the shortest side. Only a few decoded bitmaps are alive
+ * at a time: each one is added and recycled before more decodes are started. The result is serialized
+ * through {@link ImageDatabaseLoader} so the catalog is only built once.
+ */
+@SuppressWarnings({"AndroidApiChecker"})
+final class ImageDatabaseBuilder {
+
+    private static final String TAG = "ImageDatabaseBuilder";
+
+    static final String MANIFEST = "manifest.txt";
+
+    // Larger images only cost memory and time.
+    static final int MAX_IMAGE_SIZE = 640;
+    // ARCore rejects images with a side shorter than this.
+    static final int MIN_IMAGE_SIZE = 300;
+
+    static final class Target {
+        final String name;
+        final float widthInMeters;
+
+        Target(String name, float widthInMeters) {
+            this.name = name;
+            this.widthInMeters = widthInMeters;
+        }
+    }
+
+    /**
+     * Build time and peak memory of a build, logged after every build.
+     */
+    static final class Report {
+        int imageCount;
+        int failedCount;
+        boolean fromCache;
+        long buildMs;
+        long peakJavaHeapBytes;
+        long peakNativeHeapBytes;
+
+        @Override
+        public String toString() {
+            return (fromCache ? "cached " : "built ") + imageCount + " images (" + failedCount + " failed) in "
+                    + buildMs + " ms, peak java heap " + (peakJavaHeapBytes >> 10) + " KB, peak native heap "
+                    + (peakNativeHeapBytes >> 10) + " KB";
+        }
+
+        private void sampleMemory() {
+            Runtime runtime = Runtime.getRuntime();
+            peakJavaHeapBytes = Math.max(peakJavaHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+            peakNativeHeapBytes = Math.max(peakNativeHeapBytes, Debug.getNativeHeapAllocatedSize());
+        }
+    }
+
+    private static final class Decoded {
+        final Target target;
+        final Bitmap bitmap;
+
+        Decoded(Target target, Bitmap bitmap) {
+            this.target = target;
+            this.bitmap = bitmap;
+        }
+    }
+
+    private ImageDatabaseBuilder() {
+    }
+
+    /**
+     * Builds, or loads the cached build of, the database for the images in {@code assetDir}.
+     */
+    static CompletableFuture<AugmentedImageDatabase> build(Context context, Session session, String assetDir) {
+        Context appContext = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Report report = new Report();
+                AugmentedImageDatabase database = build(appContext, session, assetDir, report);
+                Log.i(TAG, assetDir + ": " + report);
+                return database;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ImageDatabaseLoader.executor());
+    }
+
+    static AugmentedImageDatabase build(Context context, Session session, String assetDir, Report report)
+            throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        AssetManager assets = context.getAssets();
+        List<Target> targets = readTargets(assets, assetDir);
+        report.imageCount = targets.size();
+
+        String key = cacheKey(context, assetDir, targets);
+        AugmentedImageDatabase database = ImageDatabaseLoader.loadCached(context, session, key);
+        if (database != null) {
+            report.fromCache = true;
+            report.buildMs = SystemClock.elapsedRealtime() - start;
+            report.sampleMemory();
+            return database;
+        }
+
+        database = new AugmentedImageDatabase(session);
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        ExecutorService decoders = Executors.newFixedThreadPool(threads);
+        try {
+            ExecutorCompletionService<Decoded> completion = new ExecutorCompletionService<>(decoders);
+            // Keep at most two decoded bitmaps per thread alive.
+            int window = threads * 2;
+            int submitted = 0;
+            int completed = 0;
+            while (completed < targets.size()) {
+                while (submitted < targets.size() && submitted - completed < window) {
+                    Target target = targets.get(submitted++);
+                    completion.submit(() -> new Decoded(target, decode(assets, assetDir + "/" + target.name)));
+                }
+                Decoded decoded = take(completion);
+                completed++;
+                report.sampleMemory();
+                if (decoded.bitmap == null) {
+                    report.failedCount++;
+                    continue;
+                }
+                // AugmentedImageDatabase is not thread safe, images are added one at a time.
+                try {
+                    if (decoded.target.widthInMeters > 0) {
+                        database.addImage(decoded.target.name, decoded.bitmap, decoded.target.widthInMeters);
+                    } else {
+                        database.addImage(decoded.target.name, decoded.bitmap);
+                    }
+                } catch (RuntimeException e) {
+                    // e.g. ImageInsufficientQualityException for images with too few features.
+                    Log.w(TAG, "Cannot add " + decoded.target.name, e);
+                    report.failedCount++;
+                } finally {
+                    decoded.bitmap.recycle();
+                }
+            }
+        } finally {
+            decoders.shutdownNow();
+        }
+
+        ImageDatabaseLoader.store(context, key, database);
+        report.buildMs = SystemClock.elapsedRealtime() - start;
+        report.sampleMemory();
+        return database;
+    }
+
+    static List<Target> readTargets(AssetManager assets, String assetDir) throws IOException {
+        List<Target> targets = new ArrayList<>();
+        String[] files = assets.list(assetDir);
+        boolean hasManifest = false;
+        if (files != null) {
+            for (String file : files) {
+                if (MANIFEST.equals(file)) {
+                    hasManifest = true;
+                    break;
+                }
+            }
+        }
+        if (!hasManifest) {
+            if (files != null) {
+                for (String file : files) {
+                    targets.add(new Target(file, 0));
+                }
+            }
+            return targets;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                assets.open(assetDir + "/" + MANIFEST), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                float width = 0;
+                if (parts.length > 1) {
+                    try {
+                        width = Float.parseFloat(parts[1].trim());
+                    } catch (NumberFormatException e) {
+                        Log.w(TAG, "Ignoring invalid width in manifest line: " + line);
+                    }
+                }
+                targets.add(new Target(parts[0].trim(), width));
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Decodes an image, downsampled so its longest side is at most {@link #MAX_IMAGE_SIZE}, unless
+     * that would take its shortest side below {@link #MIN_IMAGE_SIZE}; then the shortest side is
+     * {@link #MIN_IMAGE_SIZE}. Smaller images are not scaled. Returns null if it cannot be decoded.
+     */
+    static Bitmap decode(AssetManager assets, String path) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream is = assets.open(path)) {
+            BitmapFactory.decodeStream(is, null, options);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read " + path, e);
+            return null;
+        }
+        int longestSide = Math.max(options.outWidth, options.outHeight);
+        int shortestSide = Math.min(options.outWidth, options.outHeight);
+        if (shortestSide <= 0) {
+            Log.w(TAG, "Not an image: " + path);
+            return null;
+        }
+        options.inJustDecodeBounds = false;
+        // Decoding subsamples by powers of two only, as far as both bounds allow; the rest is scaled.
+        options.inSampleSize = 1;
+        while (longestSide / (options.inSampleSize * 2) >= MAX_IMAGE_SIZE
+                && shortestSide / (options.inSampleSize * 2) >= MIN_IMAGE_SIZE) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap bitmap;
+        try (InputStream is = assets.open(path)) {
+            bitmap = BitmapFactory.decodeStream(is, null, options);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read " + path, e);
+            return null;
+        }
+        if (bitmap == null) {
+            return null;
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        float scale = Math.min(1f, Math.max((float) MAX_IMAGE_SIZE / Math.max(width, height),
+                (float) MIN_IMAGE_SIZE / Math.min(width, height)));
+        if (scale < 1f) {
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                    Math.round(width * scale), Math.round(height * scale), true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+                bitmap = scaled;
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * The key covers the name and width of every image and the APK they came from. Assets only change
+     * with the APK, so a replaced image is caught without reading all images to find out that the
+     * catalog did not change.
+     */
+    private static String cacheKey(Context context, String assetDir, List<Target> targets) {
+        StringBuilder description = new StringBuilder(assetDir).append(';').append(MAX_IMAGE_SIZE)
+                .append(';').append(MIN_IMAGE_SIZE)
+                .append(';').append(ImageDatabaseLoader.apkUpdateTime(context));
+        for (Target target : targets) {
+            description.append(';').append(target.name).append(',').append(target.widthInMeters);
+        }
+        return ImageDatabaseLoader.cacheKey(description.toString());
+    }
+
+    private static Decoded take(ExecutorCompletionService<Decoded> completion) throws IOException {
+        try {
+            Future<Decoded> future = completion.take();
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building the image database", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot decode image", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.cw.artest.augmentedimage;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.cw.artest.metrics.Metrics;
+
+import com.google.ar.core.AugmentedImageDatabase;
+import com.google.ar.core.Session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the {@link AugmentedImageDatabase} of a session on a background thread.
+ *
+ * <p>A database built from images is serialized to app storage under a key naming the source images
+ * and the APK they came from, so later sessions, even in a later process, only deserialize it.
+ * Serialized databases are also kept in memory for the lifetime of the process.
+ */
+@SuppressWarnings({"AndroidApiChecker"})
+final class ImageDatabaseLoader {
+
+    private static final String TAG = "ImageDatabaseLoader";
+
+    private static final String CACHE_DIR = "imgdb";
+
+    // Bump when the way databases are built changes, to invalidate cached files.
+    private static final int CACHE_VERSION = 1;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ImageDatabaseLoader");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    // The last serialized database and its cache key.
+    private static String memoryKey;
+    private static byte[] memoryBytes;
+
+    private ImageDatabaseLoader() {
+    }
+
+    /**
+     * Deserializes a pre-built database from assets.
+     */
+    static CompletableFuture<AugmentedImageDatabase> loadSerialized(
+            Context context, Session session, String assetName) {
+        Context appContext = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                String key = "asset:" + assetName;
+                byte[] bytes = remembered(key);
+                if (bytes == null) {
+                    bytes = readAsset(appContext, assetName);
+                }
+                remember(key, bytes);
+                long deserializeStartNs = System.nanoTime();
+                AugmentedImageDatabase database =
+                        AugmentedImageDatabase.deserialize(session, new ByteArrayInputStream(bytes));
+                Metrics.DATABASE_DESERIALIZE.recordSince(deserializeStartNs);
+                Log.d(TAG, "Deserialized " + assetName + " in " + (SystemClock.elapsedRealtime() - start) + " ms");
+                return database;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Reads a pre-built database from assets into memory ahead of time, e.g. while the menu is shown,
+     * so {@link #loadSerialized} only has to deserialize it.
+     */
+    static CompletableFuture<Void> prefetchSerialized(Context context, String assetName) {
+        Context appContext = context.getApplicationContext();
+        return CompletableFuture.runAsync(() -> {
+            String key = "asset:" + assetName;
+            if (remembered(key) != null) {
+                return;
+            }
+            try {
+                remember(key, readAsset(appContext, assetName));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Builds a database from a single image in assets, reusing the serialized result of an earlier
+     * build of the same image.
+     */
+    static CompletableFuture<AugmentedImageDatabase> loadSingleImage(
+            Context context, Session session, String imageName) {
+        Context appContext = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                // Assets only change with the APK, so the image is only read to build the database.
+                String key = cacheKey(imageName + '@' + apkUpdateTime(appContext));
+                AugmentedImageDatabase database = loadCached(appContext, session, key);
+                if (database != null) {
+                    Log.d(TAG, "Loaded cached database for " + imageName + " in "
+                            + (SystemClock.elapsedRealtime() - start) + " ms");
+                    return database;
+                }
+
+                byte[] imageBytes = readAsset(appContext, imageName);
+                Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+                if (bitmap == null) {
+                    throw new IOException("Cannot decode " + imageName);
+                }
+                database = new AugmentedImageDatabase(session);
+                database.addImage(imageName, bitmap);
+                bitmap.recycle();
+                store(appContext, key, database);
+                Log.d(TAG, "Built database for " + imageName + " in "
+                        + (SystemClock.elapsedRealtime() - start) + " ms");
+                return database;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Returns the database cached under {@code key}, or null if there is none.
+     */
+    static AugmentedImageDatabase loadCached(Context context, Session session, String key) {
+        byte[] bytes = remembered(key);
+        File file = cacheFile(context, key);
+        if (bytes == null && file.exists()) {
+            try (InputStream is = new FileInputStream(file)) {
+                bytes = readFully(is);
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot read cached database " + file, e);
+                return null;
+            }
+        }
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            long deserializeStartNs = System.nanoTime();
+            AugmentedImageDatabase database =
+                    AugmentedImageDatabase.deserialize(session, new ByteArrayInputStream(bytes));
+            Metrics.DATABASE_DESERIALIZE.recordSince(deserializeStartNs);
+            remember(key, bytes);
+            return database;
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding corrupt cached database " + file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Serializes {@code database} to app storage under {@code key}.
+     */
+    static void store(Context context, String key, AugmentedImageDatabase database) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            database.serialize(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot serialize database", e);
+            return;
+        }
+        remember(key, bytes.toByteArray());
+
+        File file = cacheFile(context, key);
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Cannot create " + dir);
+            return;
+        }
+        // Write to a temporary file first so a crash never leaves a truncated database behind.
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream os = new FileOutputStream(tmp)) {
+            bytes.writeTo(os);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write " + tmp, e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Returns a cache key for a database, named by a {@code description} of its source images.
+     */
+    static String cacheKey(String description) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(description.getBytes());
+            StringBuilder key = new StringBuilder("v").append(CACHE_VERSION).append('-');
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * When the APK was installed or last updated, the only time assets can change.
+     */
+    static long apkUpdateTime(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            // Our own package is always installed.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static ExecutorService executor() {
+        return EXECUTOR;
+    }
+
+    private static synchronized byte[] remembered(String key) {
+        return key.equals(memoryKey) ? memoryBytes : null;
+    }
+
+    private static synchronized void remember(String key, byte[] bytes) {
+        memoryKey = key;
+        memoryBytes = bytes;
+    }
+
+    private static File cacheFile(Context context, String key) {
+        return new File(new File(context.getFilesDir(), CACHE_DIR), key + ".imgdb");
+    }
+
+    private static byte[] readAsset(Context context, String assetName) throws IOException {
+        try (InputStream is = context.getAssets().open(assetName)) {
+            return readFully(is);
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(is.available(), 8192));
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
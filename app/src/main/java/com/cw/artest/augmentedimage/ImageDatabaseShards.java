@@ -0,0 +1,80 @@
+package com.cw.artest.augmentedimage;
+
+import android.content.Context;
+
+import com.cw.artest.metrics.LatencyHistogram;
+import com.cw.artest.metrics.Metrics;
+import com.google.ar.core.AugmentedImageDatabase;
+import com.google.ar.core.Session;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A catalog split into several image databases, of which one at a time is configured in the session.
+ * Keeping each shard small keeps detection fast however large the whole catalog grows.
+ *
+ * <p>A shard is either a pre-built {@code .imgdb} asset or a folder of images built by
+ * {@link ImageDatabaseBuilder}. Shards are loaded on first use and kept for the lifetime of the
+ * session, so switching back to a shard only costs a {@link Session#configure} call.
+ *
+ * <p>Each shard has a {@code shard.detect.<name>} histogram of the time from configuring it to its
+ * first detected image, to check that detection does not slow down as shards are added.
+ */
+@SuppressWarnings({"AndroidApiChecker"})
+final class ImageDatabaseShards {
+
+    private static final String SERIALIZED_SUFFIX = ".imgdb";
+
+    // Registered once per process, a new session reuses the histograms of the previous one.
+    private static final Map<String, LatencyHistogram> DETECTION_LATENCIES = new HashMap<>();
+
+    private final Context context;
+    private final Session session;
+    private final String[] shardAssets;
+    private final CompletableFuture<?>[] databases;
+
+    ImageDatabaseShards(Context context, Session session, String[] shardAssets) {
+        this.context = context.getApplicationContext();
+        this.session = session;
+        this.shardAssets = shardAssets;
+        this.databases = new CompletableFuture<?>[shardAssets.length];
+    }
+
+    int size() {
+        return shardAssets.length;
+    }
+
+    String getName(int shard) {
+        return shardAssets[shard];
+    }
+
+    /**
+     * Time from configuring {@code shard} to the first image detected with it.
+     */
+    LatencyHistogram getDetectionLatency(int shard) {
+        synchronized (DETECTION_LATENCIES) {
+            LatencyHistogram histogram = DETECTION_LATENCIES.get(shardAssets[shard]);
+            if (histogram == null) {
+                histogram = Metrics.histogram("shard.detect." + shardAssets[shard]);
+                DETECTION_LATENCIES.put(shardAssets[shard], histogram);
+            }
+            return histogram;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    CompletableFuture<AugmentedImageDatabase> get(int shard) {
+        CompletableFuture<AugmentedImageDatabase> database =
+                (CompletableFuture<AugmentedImageDatabase>) databases[shard];
+        if (database == null || database.isCompletedExceptionally()) {
+            String asset = shardAssets[shard];
+            database = asset.endsWith(SERIALIZED_SUFFIX)
+                    ? ImageDatabaseLoader.loadSerialized(context, session, asset)
+                    : ImageDatabaseBuilder.build(context, session, asset);
+            databases[shard] = database;
+        }
+        return database;
+    }
+}
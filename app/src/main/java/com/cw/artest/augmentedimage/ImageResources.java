@@ -0,0 +1,75 @@
+package com.cw.artest.augmentedimage;
+
+import com.cw.artest.tracking.ContentSlot;
+import com.cw.artest.video.MediaPlayerPool;
+import com.google.ar.core.Anchor;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.rendering.ExternalTexture;
+
+/**
+ * Owns the Sceneform and ARCore resources created for one tracked augmented image, on top of its
+ * content, and tears them down in one place, when the image stops being tracked or the activity is
+ * destroyed.
+ */
+class ImageResources extends ContentSlot {
+
+    private AnchorNode node;
+    private MediaPlayerPool.Lease playerLease;
+    private ExternalTexture texture;
+
+    /**
+     * Sets the node attached to the scene for this image. Its anchor, set now or later, is detached
+     * on release.
+     */
+    void setNode(AnchorNode node) {
+        this.node = node;
+        ResourceCounters.NODES.incrementAndGet();
+    }
+
+    AnchorNode getNode() {
+        return node;
+    }
+
+    void setPlayerLease(MediaPlayerPool.Lease playerLease) {
+        this.playerLease = playerLease;
+        ResourceCounters.PLAYER_LEASES.incrementAndGet();
+    }
+
+    void setTexture(ExternalTexture texture) {
+        this.texture = texture;
+    }
+
+    @Override
+    protected void onSuspendedChanged(boolean suspended) {
+        if (node != null) {
+            node.setEnabled(!suspended);
+        }
+    }
+
+    @Override
+    protected void onRelease() {
+        if (playerLease != null) {
+            playerLease.release();
+            playerLease = null;
+            ResourceCounters.PLAYER_LEASES.decrementAndGet();
+        }
+        if (texture != null) {
+            // Sceneform frees the texture stream itself once unreferenced, only the producer side
+            // surface can be released here.
+            texture.getSurface().release();
+            texture = null;
+            ResourceCounters.TEXTURES.decrementAndGet();
+        }
+        if (node != null) {
+            Anchor anchor = node.getAnchor();
+            node.setParent(null);
+            if (anchor != null) {
+                node.setAnchor(null);
+                anchor.detach();
+                ResourceCounters.ANCHORS.decrementAndGet();
+            }
+            node = null;
+            ResourceCounters.NODES.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.cw.artest.augmentedimage;
+
+import android.widget.ImageView;
+
+import com.cw.artest.R;
+import com.cw.artest.metrics.Metrics;
+import com.cw.artest.tracking.LevelOfDetail;
+import com.google.ar.core.AugmentedImage;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.ViewRenderable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 模型展示: the dancing andy model standing on the image, see {@link AugmentedImageNode}. Shown as
+ * a static billboard while the image is small on screen.
+ */
+@SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+class ModelContent implements ImageContent {
+
+    private ContentHost host;
+    private CompletableFuture<ModelRenderable> model;
+    private CompletableFuture<ViewRenderable> billboard;
+    private AugmentedImageNode node;
+    private int detailLevel = LevelOfDetail.HIGH;
+
+    @Override
+    public void prepare(ContentHost host) {
+        this.host = host;
+        model = RenderableCache.getInstance().load(host.getActivity(), RenderableCache.ANDY_DANCE);
+    }
+
+    @Override
+    public void attach(ContentHost host, AugmentedImage image, ImageResources resources) {
+        node = new AugmentedImageNode(model);
+        resources.setNode(node);
+        node.setImage(host.getArFragment().getTransformationSystem(), image);
+    }
+
+    @Override
+    public void setActive(boolean active) {
+        if (node != null) {
+            node.setActive(active);
+        }
+    }
+
+    /**
+     * A small model is replaced by a static billboard of its icon, built the first time it is needed.
+     */
+    @Override
+    public void setDetailLevel(int level) {
+        detailLevel = level;
+        if (node == null) {
+            return;
+        }
+        if (level == LevelOfDetail.HIGH) {
+            node.setLowDetail(null);
+            return;
+        }
+        if (billboard == null) {
+            billboard = Metrics.VIEW_RENDERABLE_BUILD.time(ViewRenderable.builder()
+                    .setView(host.getActivity(), R.layout.renderable_image).build())
+                    .thenApply(viewRenderable -> {
+                        ImageView imageView = viewRenderable.getView().findViewById(R.id.image);
+                        imageView.setImageResource(R.drawable.model_icon);
+                        return viewRenderable;
+                    });
+        }
+        // The model stays until the billboard is ready.
+        billboard.thenAccept(viewRenderable -> {
+            if (detailLevel == LevelOfDetail.LOW) {
+                node.setLowDetail(viewRenderable);
+            }
+        }).exceptionally(throwable -> {
+            host.showContentError(throwable);
+            return null;
+        });
+    }
+
+    @Override
+    public void release() {
+        if (billboard != null) {
+            billboard.cancel(false);
+        }
+        if (node != null) {
+            node.release();
+        } else if (model != null) {
+            model.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.cw.artest.augmentedimage;
+
+/**
+ * Stays on a shard while its images are being matched and otherwise scans the catalog round robin,
+ * giving each shard a fixed dwell time.
+ */
+public class RecentMatchShardPolicy implements ShardPolicy {
+
+    private final long dwellMs;
+    private final long holdMs;
+
+    /**
+     * @param dwellMs how long an unmatched shard is kept while scanning
+     * @param holdMs  how long a shard is kept after its last match
+     */
+    public RecentMatchShardPolicy(long dwellMs, long holdMs) {
+        this.dwellMs = dwellMs;
+        this.holdMs = holdMs;
+    }
+
+    @Override
+    public int selectShard(int activeShard, int shardCount, long activeSinceMs, long lastMatchMs, long nowMs) {
+        if (activeShard < 0) {
+            return 0;
+        }
+        if (lastMatchMs > 0 && nowMs - lastMatchMs < holdMs) {
+            return activeShard;
+        }
+        if (nowMs - Math.max(activeSinceMs, lastMatchMs) < dwellMs) {
+            return activeShard;
+        }
+        return (activeShard + 1) % shardCount;
+    }
+}
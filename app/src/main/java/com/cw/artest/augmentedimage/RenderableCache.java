@@ -0,0 +1,203 @@
+package com.cw.artest.augmentedimage;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.util.Log;
+
+import com.cw.artest.metrics.Metrics;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * App-wide cache of {@link ModelRenderable}s keyed by asset uri.
+ *
+ * <p>Each asset is parsed once; callers always receive their own {@link ModelRenderable#makeCopy()}
+ * so materials can be changed per node. Concurrent requests for an asset that is still loading share
+ * the same in-flight future. Loaded prototypes are evicted least-recently-used first once the
+ * estimated size of the cache exceeds the memory budget.
+ */
+@SuppressWarnings({"AndroidApiChecker"})
+public final class RenderableCache {
+
+    private static final String TAG = "RenderableCache";
+
+    public static final String ANDY_DANCE = "models/andy_dance.sfb";
+    public static final String CHROMA_KEY_VIDEO = "models/chroma_key_video.sfb";
+
+    private static final long DEFAULT_BUDGET_BYTES = 16L * 1024 * 1024;
+
+    // Used when the asset size cannot be read, e.g. for compressed assets.
+    private static final long UNKNOWN_SIZE_BYTES = 1024L * 1024;
+
+    private static RenderableCache instance;
+
+    // Access ordered, the eldest entry is the least recently used one.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<ModelRenderable>> inFlight = new HashMap<>();
+
+    private long budgetBytes = DEFAULT_BUDGET_BYTES;
+    private long usedBytes;
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    private static final class Entry {
+        final ModelRenderable renderable;
+        final long sizeBytes;
+
+        Entry(ModelRenderable renderable, long sizeBytes) {
+            this.renderable = renderable;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+    private RenderableCache() {
+    }
+
+    public static synchronized RenderableCache getInstance() {
+        if (instance == null) {
+            instance = new RenderableCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the memory budget used for eviction. Shrinking the budget trims the cache immediately.
+     */
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        trimToBudget();
+    }
+
+    /**
+     * Returns a future copy of the renderable at {@code assetPath}, loading it if needed.
+     */
+    public CompletableFuture<ModelRenderable> load(Context context, String assetPath) {
+        CompletableFuture<ModelRenderable> prototype;
+        boolean miss = false;
+        synchronized (this) {
+            Entry entry = entries.get(assetPath);
+            if (entry != null) {
+                hitCount++;
+                Metrics.RENDERABLE_CACHE_HITS.increment();
+                return CompletableFuture.completedFuture(entry.renderable.makeCopy());
+            }
+            prototype = inFlight.get(assetPath);
+            if (prototype == null) {
+                missCount++;
+                Metrics.RENDERABLE_CACHE_MISSES.increment();
+                // Registered before building, so concurrent requests share it.
+                prototype = new CompletableFuture<>();
+                inFlight.put(assetPath, prototype);
+                miss = true;
+            } else {
+                hitCount++;
+                Metrics.RENDERABLE_CACHE_HITS.increment();
+            }
+        }
+        if (miss) {
+            build(context.getApplicationContext(), assetPath, prototype);
+        }
+        return prototype.thenApply(ModelRenderable::makeCopy);
+    }
+
+    /**
+     * Drops every cached prototype. Copies already handed out stay valid.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Builds the renderable into {@code prototype}. Runs without the lock, estimating the size reads
+     * the asset.
+     */
+    private void build(Context context, String assetPath, CompletableFuture<ModelRenderable> prototype) {
+        long sizeBytes = estimateSize(context, assetPath);
+        CompletableFuture<ModelRenderable> future;
+        try {
+            future = Metrics.MODEL_RENDERABLE_BUILD.time(ModelRenderable.builder()
+                    .setSource(context, Uri.parse(assetPath))
+                    .build());
+        } catch (RuntimeException e) {
+            // Otherwise later requests would wait for the prototype forever.
+            synchronized (this) {
+                inFlight.remove(assetPath);
+            }
+            prototype.completeExceptionally(e);
+            throw e;
+        }
+        future.whenComplete((renderable, throwable) -> {
+            synchronized (this) {
+                inFlight.remove(assetPath);
+                if (throwable != null) {
+                    Log.e(TAG, "Exception loading " + assetPath, throwable);
+                } else {
+                    Entry previous = entries.put(assetPath, new Entry(renderable, sizeBytes));
+                    if (previous != null) {
+                        usedBytes -= previous.sizeBytes;
+                    }
+                    usedBytes += sizeBytes;
+                    trimToBudget();
+                }
+            }
+            if (throwable != null) {
+                prototype.completeExceptionally(throwable);
+            } else {
+                prototype.complete(renderable);
+            }
+        });
+    }
+
+    private void trimToBudget() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        // Always keep the most recently used entry, even if it alone is over budget.
+        while (usedBytes > budgetBytes && entries.size() > 1 && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            usedBytes -= eldest.getValue().sizeBytes;
+            iterator.remove();
+            evictionCount++;
+            Log.d(TAG, "Evicted " + eldest.getKey());
+        }
+    }
+
+    private static long estimateSize(Context context, String assetPath) {
+        try (AssetFileDescriptor fd = context.getAssets().openFd(assetPath)) {
+            return fd.getLength();
+        } catch (IOException e) {
+            // Compressed assets cannot be opened as a file descriptor.
+        }
+        try (InputStream is = context.getAssets().open(assetPath)) {
+            // Asset streams report the full uncompressed length without reading it.
+            int available = is.available();
+            return available > 0 ? available : UNKNOWN_SIZE_BYTES;
+        } catch (IOException e) {
+            return UNKNOWN_SIZE_BYTES;
+        }
+    }
+}
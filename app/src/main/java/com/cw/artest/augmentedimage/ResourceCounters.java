@@ -0,0 +1,27 @@
+package com.cw.artest.augmentedimage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live counts of the native resources created for augmented images. Each count goes up when a
+ * resource is created and down when it is released, so all of them should return to zero once every
+ * image has stopped.
+ */
+public final class ResourceCounters {
+
+    public static final AtomicInteger ANCHORS = new AtomicInteger();
+    public static final AtomicInteger NODES = new AtomicInteger();
+    // Media player leases held by images, the players themselves are owned by the pool.
+    public static final AtomicInteger PLAYER_LEASES = new AtomicInteger();
+    public static final AtomicInteger TEXTURES = new AtomicInteger();
+
+    private ResourceCounters() {
+    }
+
+    public static String dump() {
+        return "anchors=" + ANCHORS.get()
+                + " nodes=" + NODES.get()
+                + " playerLeases=" + PLAYER_LEASES.get()
+                + " textures=" + TEXTURES.get();
+    }
+}
@@ -0,0 +1,20 @@
+package com.cw.artest.augmentedimage;
+
+/**
+ * Decides which shard of a sharded image catalog is loaded into the session, see
+ * {@link ImageDatabaseShards}.
+ */
+public interface ShardPolicy {
+
+    /**
+     * Called periodically on the main thread.
+     *
+     * @param activeShard   the shard currently in the session, or -1 before the first one
+     * @param shardCount    number of shards in the catalog
+     * @param activeSinceMs uptime at which the active shard was configured
+     * @param lastMatchMs   uptime at which an image of the active shard was last tracked, or 0
+     * @param nowMs         current uptime
+     * @return the shard that should be active
+     */
+    int selectShard(int activeShard, int shardCount, long activeSinceMs, long lastMatchMs, long nowMs);
+}
@@ -0,0 +1,63 @@
+package com.cw.artest.augmentedimage;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records named markers on the way from process start to the first tracked image, e.g. menu shown,
+ * pre-warm done, session resumed and first tracking. Each marker is kept once per process, so the
+ * markers describe the cold start. Times are relative to the start of the process.
+ */
+public final class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+
+    public static final String MENU_SHOWN = "menu shown";
+    public static final String PREWARM_DONE = "pre-warm done";
+    public static final String AR_ACTIVITY_CREATED = "AR activity created";
+    public static final String DATABASE_CONFIGURED = "image database configured";
+    public static final String FIRST_FRAME = "first AR frame";
+    public static final String FIRST_TRACKING = "first tracking";
+
+    private static final List<String> names = new ArrayList<>();
+    private static final List<Long> times = new ArrayList<>();
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Records {@code name} unless it was recorded before.
+     */
+    public static synchronized void mark(String name) {
+        if (names.contains(name)) {
+            return;
+        }
+        long sinceStartMs = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+        names.add(name);
+        times.add(sinceStartMs);
+        Log.d(TAG, name + " at " + sinceStartMs + " ms after process start");
+    }
+
+    /**
+     * Milliseconds from process start to {@code name}, or -1 if it was not recorded.
+     */
+    public static synchronized long get(String name) {
+        int index = names.indexOf(name);
+        return index >= 0 ? times.get(index) : -1;
+    }
+
+    public static synchronized String dump() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(names.get(i)).append(' ').append(times.get(i)).append(" ms");
+        }
+        return builder.toString();
+    }
+}
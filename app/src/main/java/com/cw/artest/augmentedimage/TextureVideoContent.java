@@ -0,0 +1,124 @@
+package com.cw.artest.augmentedimage;
+
+import android.util.Log;
+
+import com.cw.artest.tracking.LevelOfDetail;
+import com.cw.artest.video.TextureVideoSource;
+import com.google.ar.core.AugmentedImage;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.rendering.ExternalTexture;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 视频展示(无播放器界面): the same video as {@link WebVideoContent}, decoded by a
+ * {@link TextureVideoSource} straight into the texture of the chroma key material. No player view is
+ * inflated and rasterized every frame. Tapping the video toggles the sound.
+ */
+@SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+class TextureVideoContent implements ImageContent {
+
+    private static final String TAG = "TextureVideoContent";
+
+    // Stream per detail level, see WebVideoContent.
+    private final String[] urlByLevel = new String[2];
+
+    private ExternalTexture texture;
+    private TextureVideoSource source;
+    private CompletableFuture<ModelRenderable> model;
+    private boolean attached;
+    private boolean active = true;
+
+    TextureVideoContent() {
+        this(WebVideoContent.VIDEO_URL, WebVideoContent.VIDEO_URL);
+    }
+
+    TextureVideoContent(String lowBitrateUrl, String highBitrateUrl) {
+        urlByLevel[LevelOfDetail.LOW] = lowBitrateUrl;
+        urlByLevel[LevelOfDetail.HIGH] = highBitrateUrl;
+    }
+
+    @Override
+    public void prepare(ContentHost host) {
+        texture = new ExternalTexture();
+        ResourceCounters.TEXTURES.incrementAndGet();
+        // Starts buffering while the image is only detected, playback starts once it is tracked.
+        source = new TextureVideoSource(host.getActivity(), urlByLevel[LevelOfDetail.HIGH]);
+        source.setSurface(texture.getSurface());
+        source.setListener(new TextureVideoSource.Listener() {
+            @Override
+            public void onFirstFrame(long elapsedMs, boolean fromCache) {
+                Log.d(TAG, "First frame of " + source.getUrl() + " after " + elapsedMs + " ms, "
+                        + (fromCache ? "warm" : "cold") + " cache");
+            }
+
+            @Override
+            public void onError(String url, int what, int extra) {
+                host.showContentError(new IllegalStateException("Cannot play " + url));
+            }
+        });
+        source.prepare();
+        model = RenderableCache.getInstance().load(host.getActivity(), RenderableCache.CHROMA_KEY_VIDEO);
+    }
+
+    @Override
+    public void attach(ContentHost host, AugmentedImage image, ImageResources resources) {
+        attached = true;
+        AnchorNode node = new AnchorNode(image.createAnchor(image.getCenterPose()));
+        ResourceCounters.ANCHORS.incrementAndGet();
+        resources.setNode(node);
+        resources.setTexture(texture);
+        if (active) {
+            source.start();
+        }
+
+        model.thenAccept(modelRenderable -> {
+            if (resources.isReleased()) {
+                return;
+            }
+            modelRenderable.getMaterial().setExternalTexture("videoTexture", texture);
+            modelRenderable.getMaterial().setFloat4("keyColor", ChromaVideoContent.CHROMA_KEY_COLOR);
+
+            Node videoNode = new Node();
+            videoNode.setParent(node);
+            videoNode.setLocalPosition(WebVideoContent.VIDEO_POSITION);
+            videoNode.setLocalScale(WebVideoContent.VIDEO_SCALE);
+            videoNode.setRenderable(modelRenderable);
+            videoNode.setOnTapListener((hitTestResult, motionEvent) -> source.setMute(!source.isMute()));
+        }).exceptionally(throwable -> {
+            host.showContentError(throwable);
+            return null;
+        });
+    }
+
+    @Override
+    public void setActive(boolean active) {
+        this.active = active;
+        if (!attached) {
+            return;
+        }
+        if (active) {
+            source.start();
+        } else {
+            source.pause();
+        }
+    }
+
+    @Override
+    public void setDetailLevel(int level) {
+        source.switchUrl(urlByLevel[level]);
+    }
+
+    @Override
+    public void release() {
+        model.cancel(false);
+        source.release();
+        // Once attached the texture is released by the image resources.
+        if (!attached) {
+            texture.getSurface().release();
+            ResourceCounters.TEXTURES.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.cw.artest.augmentedimage;
+
+import android.util.Log;
+
+import com.cw.artest.tracking.trace.Trace;
+import com.cw.artest.tracking.trace.TraceWriter;
+import com.google.ar.core.AugmentedImage;
+import com.google.ar.core.Pose;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the augmented images ARCore reports each frame to a {@link Trace} file, so the image
+ * lifecycle can be replayed on a build machine with {@code ./gradlew :tracking-core:replay}.
+ * Recording stops on the first write error.
+ */
+final class TraceRecorder {
+
+    private static final String TAG = "TraceRecorder";
+
+    // Large enough that the frame path rarely waits for the disk.
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private TraceWriter writer;
+    private final float[] pose = new float[Trace.POSE_SIZE];
+
+    private TraceRecorder(File file, TraceWriter writer) {
+        this.file = file;
+        this.writer = writer;
+    }
+
+    /**
+     * Starts a trace named after the current time in {@code dir}.
+     */
+    static TraceRecorder start(File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File file = new File(dir, "trace-" + System.currentTimeMillis() + ".txt");
+        TraceWriter writer = new TraceWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE));
+        Log.d(TAG, "Recording to " + file);
+        return new TraceRecorder(file, writer);
+    }
+
+    void beginFrame(long nowMs) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.beginFrame(nowMs);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void record(AugmentedImage image) {
+        if (writer == null) {
+            return;
+        }
+        Pose centerPose = image.getCenterPose();
+        centerPose.getTranslation(pose, 0);
+        centerPose.getRotationQuaternion(pose, 3);
+        try {
+            writer.update(image.getIndex(), ArTrackable.trackingStateOf(image), trackingMethod(image), pose,
+                    image.getExtentX(), image.getExtentZ());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records that all images were released, e.g. because the image database changed.
+     */
+    void reset() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.reset();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void stop() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+            Log.d(TAG, "Recorded " + writer.getFrameCount() + " frames to " + file);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot close " + file, e);
+        }
+        writer = null;
+    }
+
+    private void fail(IOException e) {
+        Log.w(TAG, "Cannot write " + file + ", recording stopped", e);
+        stop();
+    }
+
+    private static int trackingMethod(AugmentedImage image) {
+        switch (image.getTrackingMethod()) {
+            case FULL_TRACKING:
+                return Trace.METHOD_FULL_TRACKING;
+            case LAST_KNOWN_POSE:
+                return Trace.METHOD_LAST_KNOWN_POSE;
+            case NOT_TRACKING:
+            default:
+                return Trace.METHOD_NOT_TRACKING;
+        }
+    }
+}
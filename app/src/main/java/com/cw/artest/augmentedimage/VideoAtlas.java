@@ -0,0 +1,138 @@
+package com.cw.artest.augmentedimage;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.cw.artest.metrics.Metrics;
+import com.cw.artest.video.TextureVideoSource;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.ExternalTexture;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+import com.google.ar.sceneform.rendering.Submesh;
+import com.google.ar.sceneform.rendering.Vertex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One decoder plays a mosaic video of {@code columns} x {@code rows} tiles into one texture, and
+ * every poster shows one tile of it on its own quad. However many posters show video, there is one
+ * decoder and one texture; each poster only adds a quad sampling its sub-rectangle of the texture.
+ *
+ * <p>The video plays while at least one poster is active. Not thread safe, use from the main thread
+ * only.
+ */
+@SuppressWarnings({"AndroidApiChecker"})
+class VideoAtlas {
+
+    private static final String TAG = "VideoAtlas";
+
+    private final int columns;
+    private final int rows;
+    private final float tileAspectRatio;
+    private final ExternalTexture texture = new ExternalTexture();
+    private final TextureVideoSource source;
+    private int activeUserCount;
+    private boolean released;
+
+    /**
+     * @param tileAspectRatio width divided by height of one tile of the video.
+     */
+    VideoAtlas(Context context, String url, int columns, int rows, float tileAspectRatio) {
+        this.columns = columns;
+        this.rows = rows;
+        this.tileAspectRatio = tileAspectRatio;
+        ResourceCounters.TEXTURES.incrementAndGet();
+        source = new TextureVideoSource(context, url);
+        source.setSurface(texture.getSurface());
+        source.setMute(true);
+        source.setListener(new TextureVideoSource.Listener() {
+            @Override
+            public void onFirstFrame(long elapsedMs, boolean fromCache) {
+                Log.d(TAG, "First frame after " + elapsedMs + " ms, " + (fromCache ? "warm" : "cold") + " cache");
+            }
+
+            @Override
+            public void onError(String url, int what, int extra) {
+                Log.e(TAG, "Cannot play " + url);
+            }
+        });
+        source.prepare();
+    }
+
+    int getTileCount() {
+        return columns * rows;
+    }
+
+    float getTileAspectRatio() {
+        return tileAspectRatio;
+    }
+
+    ExternalTexture getTexture() {
+        return texture;
+    }
+
+    /**
+     * Builds a quad showing {@code tile}, one meter wide and standing on its bottom edge, with
+     * {@code material} set to sample the atlas texture.
+     */
+    CompletableFuture<ModelRenderable> createTileRenderable(int tile, Material material) {
+        float u0 = (float) (tile % columns) / columns;
+        float u1 = u0 + 1f / columns;
+        // Texture rows run top down.
+        float v0 = (float) (tile / columns) / rows;
+        float v1 = v0 + 1f / rows;
+        float halfWidth = 0.5f;
+        float height = 1f / tileAspectRatio;
+
+        Vector3 normal = Vector3.back();
+        List<Vertex> vertices = Arrays.asList(
+                vertex(-halfWidth, 0, normal, u0, v1),
+                vertex(halfWidth, 0, normal, u1, v1),
+                vertex(halfWidth, height, normal, u1, v0),
+                vertex(-halfWidth, height, normal, u0, v0));
+        Submesh submesh = Submesh.builder()
+                .setTriangleIndices(Arrays.asList(0, 1, 2, 0, 2, 3))
+                .setMaterial(material)
+                .build();
+        RenderableDefinition definition = RenderableDefinition.builder()
+                .setVertices(vertices)
+                .setSubmeshes(Arrays.asList(submesh))
+                .build();
+        material.setExternalTexture("videoTexture", texture);
+        return Metrics.MODEL_RENDERABLE_BUILD.time(ModelRenderable.builder().setSource(definition).build());
+    }
+
+    void addActiveUser() {
+        if (++activeUserCount == 1) {
+            source.start();
+        }
+    }
+
+    void removeActiveUser() {
+        if (activeUserCount > 0 && --activeUserCount == 0) {
+            source.pause();
+        }
+    }
+
+    void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        source.release();
+        texture.getSurface().release();
+        ResourceCounters.TEXTURES.decrementAndGet();
+    }
+
+    private static Vertex vertex(float x, float y, Vector3 normal, float u, float v) {
+        return Vertex.builder()
+                .setPosition(new Vector3(x, y, 0))
+                .setNormal(normal)
+                .setUvCoordinate(new Vertex.UvCoordinate(u, v))
+                .build();
+    }
+}
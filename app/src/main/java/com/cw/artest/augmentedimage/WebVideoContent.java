@@ -0,0 +1,183 @@
+package com.cw.artest.augmentedimage;
+
+import com.cw.artest.R;
+import com.cw.artest.metrics.Metrics;
+import com.cw.artest.tracking.LevelOfDetail;
+import com.cw.artest.video.SmartPickVideo;
+import com.cw.artest.video.VideoOnPrepareCallBack;
+import com.cw.artest.video.cache.VideoCaches;
+import com.google.ar.core.AugmentedImage;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.ExternalTexture;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.ViewRenderable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 视频展示: a network video played by {@link SmartPickVideo}, rendered through the chroma key
+ * material above the player controls.
+ */
+@SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+class WebVideoContent implements ImageContent {
+
+    static final String VIDEO_URL = "http://vjs.zencdn.net/v/oceans.mp4";
+    // How much of a video is fetched as soon as its image is detected.
+    static final int PREFETCH_SECONDS = 5;
+
+    private static final Vector3 VIEW_SCALE = new Vector3(0.2f, 0.2f, 1f);
+    // Where the video sits above the player controls, also used by TextureVideoContent.
+    static final Vector3 VIDEO_POSITION = new Vector3(0, 0.062f, -0.00001f);
+    static final Vector3 VIDEO_SCALE = new Vector3(0.271f, 0.115f, 1f);
+
+    // Stream per detail level. There is no low bitrate version of the sample video.
+    private final String[] urlByLevel = new String[2];
+    private int detailLevel = LevelOfDetail.HIGH;
+
+    private ExternalTexture texture;
+    private CompletableFuture<ViewRenderable> view;
+    private CompletableFuture<ModelRenderable> model;
+    private SmartPickVideo smartPickVideo;
+    private boolean attached;
+    private boolean viewAttached;
+    private boolean started;
+    private boolean active = true;
+
+    WebVideoContent() {
+        this(VIDEO_URL, VIDEO_URL);
+    }
+
+    WebVideoContent(String lowBitrateUrl, String highBitrateUrl) {
+        urlByLevel[LevelOfDetail.LOW] = lowBitrateUrl;
+        urlByLevel[LevelOfDetail.HIGH] = highBitrateUrl;
+    }
+
+    @Override
+    public void prepare(ContentHost host) {
+        // Played through the cache server, which fetches the start while the image is only detected.
+        VideoCaches.prefetch(host.getActivity(), urlByLevel[LevelOfDetail.HIGH], PREFETCH_SECONDS);
+        for (int level = 0; level < urlByLevel.length; level++) {
+            urlByLevel[level] = VideoCaches.getProxyUrl(host.getActivity(), urlByLevel[level]);
+        }
+
+        // Create an ExternalTexture for displaying the contents of the video.
+        ExternalTexture videoTexture = new ExternalTexture();
+        ResourceCounters.TEXTURES.incrementAndGet();
+        texture = videoTexture;
+        view = Metrics.VIEW_RENDERABLE_BUILD.time(ViewRenderable.builder()
+                .setView(host.getActivity(), R.layout.renderable_video).build())
+                .thenApply(viewRenderable -> {
+                    smartPickVideo = viewRenderable.getView().findViewById(R.id.video_player);
+                    smartPickVideo.setUp(urlByLevel[LevelOfDetail.HIGH], false, "");
+                    smartPickVideo.setVideoAllCallBack(new VideoOnPrepareCallBack() {
+                        @Override
+                        public void onPrepared(String url, Object... objects) {
+                            super.onPrepared(url, objects);
+                            smartPickVideo.setDisplay(videoTexture.getSurface());
+                        }
+                    });
+                    return viewRenderable;
+                });
+        model = RenderableCache.getInstance().load(host.getActivity(), RenderableCache.CHROMA_KEY_VIDEO);
+    }
+
+    @Override
+    public void attach(ContentHost host, AugmentedImage image, ImageResources resources) {
+        attached = true;
+        AnchorNode node = new AnchorNode(image.createAnchor(image.getCenterPose()));
+        ResourceCounters.ANCHORS.incrementAndGet();
+        resources.setNode(node);
+        resources.setTexture(texture);
+
+        view.thenAccept(viewRenderable -> {
+            if (resources.isReleased()) {
+                return;
+            }
+            viewAttached = true;
+            if (active) {
+                startPlayback();
+            }
+
+            Node transformableNode = new Node();
+            transformableNode.setParent(node);
+            transformableNode.setLocalScale(VIEW_SCALE);
+            transformableNode.setRenderable(viewRenderable);
+
+            model.thenAccept(modelRenderable -> {
+                if (resources.isReleased()) {
+                    return;
+                }
+                modelRenderable.getMaterial().setExternalTexture("videoTexture", texture);
+                modelRenderable.getMaterial().setFloat4("keyColor", ChromaVideoContent.CHROMA_KEY_COLOR);
+
+                Node videoNode = new Node();
+                videoNode.setParent(node);
+                //这里缩放需要计算一下，目前写死
+                videoNode.setLocalPosition(VIDEO_POSITION);
+                videoNode.setLocalScale(VIDEO_SCALE);
+
+                videoNode.setRenderable(modelRenderable);
+            }).exceptionally(throwable -> {
+                host.showContentError(throwable);
+                return null;
+            });
+        }).exceptionally(throwable -> {
+            host.showContentError(throwable);
+            return null;
+        });
+    }
+
+    @Override
+    public void setActive(boolean active) {
+        this.active = active;
+        if (!viewAttached) {
+            return;
+        }
+        if (active) {
+            if (!started) {
+                startPlayback();
+            } else if (!urlByLevel[detailLevel].equals(smartPickVideo.getUrl())) {
+                // The detail level changed while suspended.
+                smartPickVideo.switchUrl(urlByLevel[detailLevel], true);
+            } else {
+                smartPickVideo.onVideoResume(false);
+            }
+        } else if (started) {
+            smartPickVideo.onVideoPause();
+        }
+    }
+
+    @Override
+    public void setDetailLevel(int level) {
+        detailLevel = level;
+        // Suspended content switches when it resumes.
+        if (started && active) {
+            smartPickVideo.switchUrl(urlByLevel[level], true);
+        }
+    }
+
+    private void startPlayback() {
+        started = true;
+        String url = urlByLevel[detailLevel];
+        if (!url.equals(smartPickVideo.getUrl())) {
+            smartPickVideo.setUp(url, false, "");
+        }
+        smartPickVideo.startPlayLogic();
+    }
+
+    @Override
+    public void release() {
+        view.cancel(false);
+        model.cancel(false);
+        if (smartPickVideo != null) {
+            smartPickVideo.release();
+        }
+        // Once attached the texture is released by the image resources.
+        if (!attached) {
+            texture.getSurface().release();
+            ResourceCounters.TEXTURES.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.cw.artest.gif;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.bumptech.glide.gifdecoder.GifDecoder;
+import com.bumptech.glide.gifdecoder.GifHeader;
+import com.bumptech.glide.gifdecoder.GifHeaderParser;
+import com.bumptech.glide.gifdecoder.StandardGifDecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * App-wide cache of decoded GIF frames keyed by asset path and background color.
+ *
+ * <p>Each GIF is decoded once, in the background, with Glide's GIF decoder and downsampled so that its
+ * longest side is at most {@link #MAX_FRAME_SIZE}. Transparent pixels are filled with the background
+ * color, which the material keys out, so frames are stored as RGB_565. A GIF that alone would take
+ * more than the memory budget keeps only every n-th frame, each shown for the frames it stands for.
+ *
+ * <p>Concurrent requests for a GIF that is still being decoded share the same future. Decoded GIFs are
+ * evicted least-recently-used first once they take more than the memory budget; textures still
+ * playing an evicted GIF keep its frames until released.
+ */
+@SuppressWarnings({"AndroidApiChecker"})
+public final class GifFrameCache {
+
+    private static final String TAG = "GifFrameCache";
+
+    // Posters are small on screen, larger frames only cost memory.
+    static final int MAX_FRAME_SIZE = 256;
+
+    private static final long DEFAULT_BUDGET_BYTES = 24L * 1024 * 1024;
+
+    // Frames are stored as RGB_565.
+    private static final int BYTES_PER_PIXEL = 2;
+
+    // Browsers show frames with no or a tiny delay for 100 ms, GIFs are authored for that.
+    private static final int MIN_DELAY_MS = 20;
+    private static final int DEFAULT_DELAY_MS = 100;
+
+    private static GifFrameCache instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GifFrameCache");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    // Access ordered, the eldest entry is the least recently used one.
+    private final LinkedHashMap<String, GifFrames> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<GifFrames>> inFlight = new HashMap<>();
+
+    private long budgetBytes = DEFAULT_BUDGET_BYTES;
+    private long usedBytes;
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    private GifFrameCache() {
+    }
+
+    public static synchronized GifFrameCache getInstance() {
+        if (instance == null) {
+            instance = new GifFrameCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the memory budget used for eviction. Shrinking the budget trims the cache immediately.
+     */
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        trimToBudget();
+    }
+
+    /**
+     * Returns the future frames of the GIF at {@code assetPath}, decoding it if needed.
+     *
+     * @param backgroundColor opaque color transparent pixels are filled with
+     */
+    public synchronized CompletableFuture<GifFrames> load(Context context, String assetPath,
+                                                          int backgroundColor) {
+        String key = assetPath + '#' + Integer.toHexString(backgroundColor);
+        GifFrames frames = entries.get(key);
+        if (frames != null) {
+            hitCount++;
+            return CompletableFuture.completedFuture(frames);
+        }
+        CompletableFuture<GifFrames> future = inFlight.get(key);
+        if (future != null) {
+            hitCount++;
+            return future;
+        }
+        missCount++;
+        Context appContext = context.getApplicationContext();
+        long maxBytes = budgetBytes;
+        future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return decode(appContext, assetPath, backgroundColor, maxBytes);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+        inFlight.put(key, future);
+        future.whenComplete((decoded, throwable) -> {
+            synchronized (this) {
+                inFlight.remove(key);
+                if (throwable != null) {
+                    Log.e(TAG, "Exception decoding " + assetPath, throwable);
+                    return;
+                }
+                entries.put(key, decoded);
+                usedBytes += decoded.getByteCount();
+                trimToBudget();
+            }
+        });
+        return future;
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private void trimToBudget() {
+        Iterator<Map.Entry<String, GifFrames>> iterator = entries.entrySet().iterator();
+        // Decoded GIFs fit the budget they were decoded for, only a shrunk budget evicts the newest.
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            Map.Entry<String, GifFrames> eldest = iterator.next();
+            usedBytes -= eldest.getValue().getByteCount();
+            iterator.remove();
+            evictionCount++;
+            Log.d(TAG, "Evicted " + eldest.getKey());
+        }
+    }
+
+    private static GifFrames decode(Context context, String assetPath, int backgroundColor, long maxBytes)
+            throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        byte[] data;
+        try (InputStream is = context.getAssets().open(assetPath)) {
+            data = readFully(is);
+        }
+        GifHeader header = new GifHeaderParser().setData(data).parseHeader();
+        if (header.getStatus() != GifDecoder.STATUS_OK || header.getNumFrames() <= 0) {
+            throw new IOException("Cannot decode " + assetPath + ", status " + header.getStatus());
+        }
+        // The decoder only takes powers of two and divides the size by them.
+        int sampleSize = 1;
+        while (Math.max(header.getWidth(), header.getHeight()) / sampleSize > MAX_FRAME_SIZE) {
+            sampleSize *= 2;
+        }
+        int width = header.getWidth() / sampleSize;
+        int height = header.getHeight() / sampleSize;
+        long frameBytes = (long) width * height * BYTES_PER_PIXEL;
+        if (frameBytes > maxBytes) {
+            throw new IOException("A frame of " + assetPath + " alone exceeds the budget of "
+                    + maxBytes + " bytes");
+        }
+
+        StandardGifDecoder decoder =
+                new StandardGifDecoder(new FrameBitmapProvider(), header, ByteBuffer.wrap(data), sampleSize);
+        decoder.setDefaultBitmapConfig(Bitmap.Config.ARGB_8888);
+        int frameCount = decoder.getFrameCount();
+        // Every stride-th frame is kept, so that the GIF fits the budget on its own.
+        int stride = (int) Math.max(1, (frameCount * frameBytes + maxBytes - 1) / maxBytes);
+        int keptCount = (frameCount + stride - 1) / stride;
+        Bitmap[] frames = new Bitmap[keptCount];
+        int[] delaysMs = new int[keptCount];
+        for (int i = 0; i < frameCount; i++) {
+            decoder.advance();
+            Bitmap frame = decoder.getNextFrame();
+            if (frame == null) {
+                throw new IOException("Cannot decode frame " + i + " of " + assetPath);
+            }
+            if (i % stride == 0) {
+                Bitmap opaque = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+                Canvas canvas = new Canvas(opaque);
+                canvas.drawColor(backgroundColor);
+                canvas.drawBitmap(frame, 0, 0, null);
+                frames[i / stride] = opaque;
+            }
+            // The decoder hands out a new bitmap per frame and keeps no reference to it.
+            frame.recycle();
+            int delay = decoder.getDelay(decoder.getCurrentFrameIndex());
+            delaysMs[i / stride] += delay < MIN_DELAY_MS ? DEFAULT_DELAY_MS : delay;
+        }
+        decoder.clear();
+        GifFrames decoded = new GifFrames(frames, delaysMs);
+        Log.d(TAG, "Decoded " + assetPath + ": " + keptCount + " of " + frameCount + " frames of "
+                + decoded.getWidth() + "x" + decoded.getHeight() + ", " + (decoded.getByteCount() >> 10)
+                + " KB in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        return decoded;
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(is.available(), 8192));
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Hands the decoder a new bitmap for every frame, since all frames are kept.
+     */
+    private static final class FrameBitmapProvider implements GifDecoder.BitmapProvider {
+        @Override
+        public Bitmap obtain(int width, int height, Bitmap.Config config) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+
+        @Override
+        public void release(Bitmap bitmap) {
+        }
+
+        @Override
+        public byte[] obtainByteArray(int size) {
+            return new byte[size];
+        }
+
+        @Override
+        public void release(byte[] bytes) {
+        }
+
+        @Override
+        public int[] obtainIntArray(int size) {
+            return new int[size];
+        }
+
+        @Override
+        public void release(int[] array) {
+        }
+    }
+}
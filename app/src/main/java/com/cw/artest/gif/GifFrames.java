@@ -0,0 +1,67 @@
+package com.cw.artest.gif;
+
+import android.graphics.Bitmap;
+
+import java.util.Arrays;
+
+/**
+ * The decoded frames of an animated GIF and how long each one is shown. Immutable once decoded and
+ * shared by every texture playing the GIF, the bitmaps must not be modified or recycled.
+ */
+public final class GifFrames {
+
+    private final Bitmap[] frames;
+    // End time of each frame within one loop.
+    private final long[] frameEndMs;
+    private final long byteCount;
+
+    GifFrames(Bitmap[] frames, int[] delaysMs) {
+        this.frames = frames;
+        frameEndMs = new long[frames.length];
+        long end = 0;
+        long bytes = 0;
+        for (int i = 0; i < frames.length; i++) {
+            end += delaysMs[i];
+            frameEndMs[i] = end;
+            bytes += frames[i].getAllocationByteCount();
+        }
+        byteCount = bytes;
+    }
+
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    public Bitmap getFrame(int index) {
+        return frames[index];
+    }
+
+    public int getWidth() {
+        return frames[0].getWidth();
+    }
+
+    public int getHeight() {
+        return frames[0].getHeight();
+    }
+
+    public long getDurationMs() {
+        return frameEndMs[frameEndMs.length - 1];
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Index of the frame shown {@code timeMs} after the animation started, looping forever.
+     */
+    public int frameAt(long timeMs) {
+        long durationMs = getDurationMs();
+        if (durationMs <= 0) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(frameEndMs, timeMs % durationMs);
+        // An exact hit is the end of that frame, i.e. the start of the next one.
+        return index >= 0 ? (index + 1) % frames.length : -index - 1;
+    }
+}
@@ -0,0 +1,130 @@
+package com.cw.artest.gif;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.view.Surface;
+
+import com.google.ar.sceneform.rendering.ExternalTexture;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An {@link ExternalTexture} showing an animated GIF, shared by every node that shows the same GIF.
+ *
+ * <p>Frames are drawn onto the texture's surface with a hardware canvas, only when the frame changes
+ * and only while at least one user is active. Get instances from {@link GifTexturePlayer}.
+ *
+ * <p>Not thread safe, use from the main thread only.
+ */
+@SuppressWarnings({"AndroidApiChecker"})
+public final class GifTexture {
+
+    private final String assetPath;
+    private final ExternalTexture texture = new ExternalTexture();
+    private final Rect destination = new Rect();
+    private final int backgroundColor;
+    private GifFrames frames;
+    private int drawnFrame = -1;
+    private int userCount;
+    private int activeUserCount;
+    private boolean released;
+    private CompletableFuture<GifTexture> ready;
+
+    GifTexture(String assetPath, int backgroundColor) {
+        this.assetPath = assetPath;
+        this.backgroundColor = backgroundColor;
+    }
+
+    public String getAssetPath() {
+        return assetPath;
+    }
+
+    public ExternalTexture getTexture() {
+        return texture;
+    }
+
+    /**
+     * Completes on the main thread once the frames are decoded.
+     */
+    public CompletableFuture<GifTexture> whenReady() {
+        return ready;
+    }
+
+    /**
+     * Width divided by height of the GIF, 1 until it is decoded.
+     */
+    public float getAspectRatio() {
+        return frames != null ? (float) frames.getWidth() / frames.getHeight() : 1f;
+    }
+
+    /**
+     * Counts a user that wants the animation to run, e.g. a visible poster. With no active user the
+     * texture keeps showing its last frame.
+     */
+    public void addActiveUser() {
+        activeUserCount++;
+    }
+
+    public void removeActiveUser() {
+        if (activeUserCount > 0) {
+            activeUserCount--;
+        }
+    }
+
+    void setReady(CompletableFuture<GifTexture> ready) {
+        this.ready = ready;
+    }
+
+    boolean isReleased() {
+        return released;
+    }
+
+    void setFrames(GifFrames frames) {
+        this.frames = frames;
+        texture.getSurfaceTexture().setDefaultBufferSize(frames.getWidth(), frames.getHeight());
+        destination.set(0, 0, frames.getWidth(), frames.getHeight());
+        drawnFrame = -1;
+    }
+
+    int acquire() {
+        return ++userCount;
+    }
+
+    int release() {
+        return --userCount;
+    }
+
+    /**
+     * Draws the frame shown at {@code clockMs} of the shared clock, if it is not drawn yet.
+     */
+    void draw(long clockMs) {
+        if (frames == null || (activeUserCount == 0 && drawnFrame >= 0)) {
+            return;
+        }
+        int frame = frames.frameAt(clockMs);
+        if (frame == drawnFrame) {
+            return;
+        }
+        Surface surface = texture.getSurface();
+        Canvas canvas = surface.lockHardwareCanvas();
+        try {
+            // Transparent pixels are keyed out by the material.
+            canvas.drawColor(backgroundColor);
+            canvas.drawBitmap(frames.getFrame(frame), null, destination, null);
+        } finally {
+            surface.unlockCanvasAndPost(canvas);
+        }
+        drawnFrame = frame;
+    }
+
+    void releaseSurface() {
+        released = true;
+        texture.getSurface().release();
+        frames = null;
+    }
+
+    static int opaque(com.google.ar.sceneform.rendering.Color color) {
+        return Color.rgb(Math.round(color.r * 255), Math.round(color.g * 255), Math.round(color.b * 255));
+    }
+}
@@ -0,0 +1,99 @@
+package com.cw.artest.gif;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.cw.artest.augmentedimage.ResourceCounters;
+import com.google.ar.sceneform.rendering.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * Hands out one {@link GifTexture} per GIF, however many nodes show it, and advances all of them on
+ * one clock, so copies of a GIF are decoded once, drawn once per frame and stay in sync. The clock is
+ * driven by {@link #onFrame}, called once per scene frame.
+ *
+ * <p>Not thread safe, use from the main thread only.
+ */
+@SuppressWarnings({"AndroidApiChecker"})
+public final class GifTexturePlayer {
+
+    private static final String TAG = "GifTexturePlayer";
+
+    private static GifTexturePlayer instance;
+
+    private final List<GifTexture> textures = new ArrayList<>();
+    private long clockStartMs = -1;
+
+    private GifTexturePlayer() {
+    }
+
+    public static GifTexturePlayer getInstance() {
+        if (instance == null) {
+            instance = new GifTexturePlayer();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the texture of the GIF at {@code assetPath}, see {@link GifTexture#whenReady()}. Every
+     * call must be balanced by {@link #release}.
+     *
+     * @param keyColor the color drawn behind transparent pixels, which the material keys out.
+     */
+    public GifTexture acquire(Context context, String assetPath, Color keyColor) {
+        GifTexture texture = find(assetPath);
+        if (texture == null) {
+            int backgroundColor = GifTexture.opaque(keyColor);
+            GifTexture created = new GifTexture(assetPath, backgroundColor);
+            ResourceCounters.TEXTURES.incrementAndGet();
+            textures.add(created);
+            created.setReady(GifFrameCache.getInstance().load(context, assetPath, backgroundColor)
+                    .thenApplyAsync(frames -> {
+                        if (!created.isReleased()) {
+                            created.setFrames(frames);
+                        }
+                        return created;
+                    }, ContextCompat.getMainExecutor(context)));
+            texture = created;
+        }
+        texture.acquire();
+        return texture;
+    }
+
+    public void release(GifTexture texture) {
+        if (texture.release() > 0) {
+            return;
+        }
+        textures.remove(texture);
+        texture.releaseSurface();
+        ResourceCounters.TEXTURES.decrementAndGet();
+        Log.d(TAG, "Released " + texture.getAssetPath());
+    }
+
+    /**
+     * Advances every texture to the current time. Does not allocate.
+     */
+    public void onFrame(long nowMs) {
+        if (clockStartMs < 0) {
+            clockStartMs = nowMs;
+        }
+        long clockMs = nowMs - clockStartMs;
+        for (int i = 0, size = textures.size(); i < size; i++) {
+            textures.get(i).draw(clockMs);
+        }
+    }
+
+    private GifTexture find(String assetPath) {
+        for (int i = 0, size = textures.size(); i < size; i++) {
+            if (textures.get(i).getAssetPath().equals(assetPath)) {
+                return textures.get(i);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,37 @@
+package com.cw.artest.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count that only goes up, e.g. cache misses. Incrementing does not allocate.
+ */
+public final class Counter extends Metric {
+
+    private final AtomicLong count = new AtomicLong();
+
+    Counter(String name) {
+        super(name);
+    }
+
+    public void increment() {
+        count.incrementAndGet();
+    }
+
+    public void add(long delta) {
+        count.addAndGet(delta);
+    }
+
+    public long get() {
+        return count.get();
+    }
+
+    @Override
+    void reset() {
+        count.set(0);
+    }
+
+    @Override
+    void appendTo(StringBuilder builder) {
+        builder.append(getName()).append(' ').append(count.get());
+    }
+}
@@ -0,0 +1,31 @@
+package com.cw.artest.metrics;
+
+/**
+ * The current value of something, e.g. the number of attached images. Setting does not allocate.
+ */
+public final class Gauge extends Metric {
+
+    private volatile long value;
+
+    Gauge(String name) {
+        super(name);
+    }
+
+    public void set(long value) {
+        this.value = value;
+    }
+
+    public long get() {
+        return value;
+    }
+
+    @Override
+    void reset() {
+        value = 0;
+    }
+
+    @Override
+    void appendTo(StringBuilder builder) {
+        builder.append(getName()).append(' ').append(value);
+    }
+}
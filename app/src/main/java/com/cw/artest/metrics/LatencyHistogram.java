@@ -0,0 +1,120 @@
+package com.cw.artest.metrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Durations counted in fixed, roughly doubling buckets from 50 µs to 8 s. Recording does not allocate,
+ * so it can be used on the frame path; percentiles are estimated by the upper bound of their bucket.
+ */
+public final class LatencyHistogram extends Metric {
+
+    // Upper bounds of the buckets in microseconds, the last bucket takes everything above.
+    private static final long[] BUCKET_BOUNDS_US = {
+            50, 100, 250, 500, 1_000, 2_000, 4_000, 8_000, 16_000, 33_000, 66_000,
+            133_000, 266_000, 533_000, 1_000_000, 2_000_000, 4_000_000, 8_000_000};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_BOUNDS_US.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumUs = new AtomicLong();
+    private final AtomicLong maxUs = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        super(name);
+    }
+
+    /**
+     * Records a duration measured with {@link System#nanoTime()}.
+     */
+    public void recordNanos(long durationNs) {
+        recordMicros(durationNs / 1000);
+    }
+
+    public void recordSince(long startNs) {
+        recordMicros((System.nanoTime() - startNs) / 1000);
+    }
+
+    public void recordMicros(long durationUs) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_US.length && durationUs > BUCKET_BOUNDS_US[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        sumUs.addAndGet(durationUs);
+        long max;
+        while (durationUs > (max = maxUs.get()) && !maxUs.compareAndSet(max, durationUs)) {
+            // Retry, another thread recorded a larger value meanwhile.
+        }
+    }
+
+    /**
+     * Records how long {@code future} takes from now until it completes, successfully or not. Returns
+     * {@code future} for chaining. Allocates, not for the frame path.
+     */
+    @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+    public <T> CompletableFuture<T> time(CompletableFuture<T> future) {
+        long startNs = System.nanoTime();
+        future.whenComplete((result, throwable) -> recordSince(startNs));
+        return future;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMeanMicros() {
+        long n = count.get();
+        return n > 0 ? sumUs.get() / n : 0;
+    }
+
+    public long getMaxMicros() {
+        return maxUs.get();
+    }
+
+    /**
+     * Upper bound of the bucket holding the {@code percentile} (0 to 100) value, or the maximum for
+     * the last bucket.
+     */
+    public long getPercentileMicros(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_US.length; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(BUCKET_BOUNDS_US[i], maxUs.get());
+            }
+        }
+        return maxUs.get();
+    }
+
+    @Override
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sumUs.set(0);
+        maxUs.set(0);
+    }
+
+    @Override
+    void appendTo(StringBuilder builder) {
+        builder.append(getName())
+                .append(" n=").append(count.get())
+                .append(" mean=").append(formatMs(getMeanMicros()))
+                .append(" p50=").append(formatMs(getPercentileMicros(50)))
+                .append(" p90=").append(formatMs(getPercentileMicros(90)))
+                .append(" p99=").append(formatMs(getPercentileMicros(99)))
+                .append(" max=").append(formatMs(getMaxMicros()));
+    }
+
+    private static String formatMs(long us) {
+        return String.format("%.2fms", us / 1000.0);
+    }
+}
@@ -0,0 +1,21 @@
+package com.cw.artest.metrics;
+
+/**
+ * Base of the metrics kept by {@link Metrics}.
+ */
+public abstract class Metric {
+
+    private final String name;
+
+    Metric(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    abstract void reset();
+
+    abstract void appendTo(StringBuilder builder);
+}
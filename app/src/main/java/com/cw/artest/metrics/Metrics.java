@@ -0,0 +1,95 @@
+package com.cw.artest.metrics;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The app's counters, gauges and latency histograms. All of them are created and registered when
+ * this class is loaded, recording afterwards does not allocate. {@link #dump()} formats them for
+ * logcat, a file or {@link MetricsOverlay}.
+ */
+public final class Metrics {
+
+    private static final String TAG = "Metrics";
+
+    private static final List<Metric> METRICS = new ArrayList<>();
+
+    // Time spent in AugmentedImageActivity.onUpdateFrame, and between two frames.
+    public static final LatencyHistogram FRAME_UPDATE = histogram("frame.update");
+    public static final LatencyHistogram FRAME_INTERVAL = histogram("frame.interval");
+
+    // From requesting a renderable to it being built.
+    public static final LatencyHistogram MODEL_RENDERABLE_BUILD = histogram("renderable.model.build");
+    public static final LatencyHistogram VIEW_RENDERABLE_BUILD = histogram("renderable.view.build");
+    public static final Counter RENDERABLE_CACHE_HITS = counter("renderable.cache.hits");
+    public static final Counter RENDERABLE_CACHE_MISSES = counter("renderable.cache.misses");
+
+    // Loading the augmented image database, from reading or building it to having it deserialized.
+    public static final LatencyHistogram DATABASE_LOAD = histogram("database.load");
+    public static final LatencyHistogram DATABASE_DESERIALIZE = histogram("database.deserialize");
+
+    // From starting to prepare a video to it being prepared.
+    public static final LatencyHistogram VIDEO_PREPARE = histogram("video.prepare");
+
+    public static final Gauge ATTACHED_IMAGES = gauge("images.attached");
+    public static final Counter CONTENT_ATTACHED = counter("content.attached");
+
+    private Metrics() {
+    }
+
+    public static synchronized Counter counter(String name) {
+        return register(new Counter(name));
+    }
+
+    public static synchronized Gauge gauge(String name) {
+        return register(new Gauge(name));
+    }
+
+    public static synchronized LatencyHistogram histogram(String name) {
+        return register(new LatencyHistogram(name));
+    }
+
+    private static <T extends Metric> T register(T metric) {
+        METRICS.add(metric);
+        return metric;
+    }
+
+    public static synchronized void resetAll() {
+        for (int i = 0; i < METRICS.size(); i++) {
+            METRICS.get(i).reset();
+        }
+    }
+
+    /**
+     * All metrics, one per line.
+     */
+    public static synchronized String dump() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < METRICS.size(); i++) {
+            METRICS.get(i).appendTo(builder);
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    public static void log() {
+        for (String line : dump().split("\n")) {
+            Log.i(TAG, line);
+        }
+    }
+
+    /**
+     * Writes {@link #dump()} to {@code file}, e.g. to pull it with adb after a session.
+     */
+    public static void writeTo(File file) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(dump());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.cw.artest.metrics;
+
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+/**
+ * Debug overlay showing {@link Metrics#dump()}, refreshed once a second while attached.
+ */
+public class MetricsOverlay {
+
+    private static final long REFRESH_INTERVAL_MS = 1000;
+
+    private final TextView textView;
+    private final Runnable refresh = this::refresh;
+
+    public MetricsOverlay(FrameLayout parent) {
+        textView = new TextView(parent.getContext());
+        textView.setTypeface(Typeface.MONOSPACE);
+        textView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 9);
+        textView.setTextColor(Color.WHITE);
+        textView.setBackgroundColor(0x80000000);
+        int padding = (int) TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_DIP, 4, parent.getResources().getDisplayMetrics());
+        textView.setPadding(padding, padding, padding, padding);
+        parent.addView(textView, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT,
+                Gravity.TOP | Gravity.START));
+    }
+
+    public void setVisible(boolean visible) {
+        textView.setVisibility(visible ? View.VISIBLE : View.GONE);
+    }
+
+    public void start() {
+        textView.removeCallbacks(refresh);
+        refresh();
+    }
+
+    public void stop() {
+        textView.removeCallbacks(refresh);
+    }
+
+    private void refresh() {
+        textView.setText(Metrics.dump());
+        textView.postDelayed(refresh, REFRESH_INTERVAL_MS);
+    }
+}
@@ -0,0 +1,56 @@
+package com.cw.artest.net;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * Covers loaded by Glide and videos fetched by the video cache go to the same CDNs, so they share
+ * one {@link OkHttpClient}: connections and TLS sessions are reused across both, HTTP/2 multiplexes
+ * their requests over one connection where the server supports it, and cacheable responses land in
+ * one disk cache.
+ */
+public final class HttpClients {
+
+    private static final String CACHE_DIR = "http";
+    private static final long CACHE_SIZE_BYTES = 32L * 1024 * 1024;
+
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 15_000;
+
+    private static OkHttpClient client;
+
+    private HttpClients() {
+    }
+
+    public static synchronized OkHttpClient get(Context context) {
+        if (client == null) {
+            File cacheDir = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR);
+            client = newBuilder()
+                    .cache(new Cache(cacheDir, CACHE_SIZE_BYTES))
+                    .build();
+        }
+        return client;
+    }
+
+    /**
+     * The configuration of the shared client without its disk cache, also used to benchmark it.
+     */
+    static OkHttpClient.Builder newBuilder() {
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+}
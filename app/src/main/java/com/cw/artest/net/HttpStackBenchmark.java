@@ -0,0 +1,211 @@
+package com.cw.artest.net;
+
+import android.util.Log;
+
+import com.cw.artest.video.cache.HttpUrlOrigin;
+import com.cw.artest.video.cache.OkHttpOrigin;
+import com.cw.artest.video.cache.VideoOrigin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Compares request latency of separate HTTP stacks for covers and videos with the shared
+ * {@link HttpClients} client, against a local server standing in for the CDN.
+ *
+ * <p>The server waits {@code connectDelayMs} before answering on a new connection, standing in for the
+ * TCP and TLS handshakes a remote CDN costs, so the numbers show what connection reuse saves.
+ * Before, covers went through a client of their own and every video range request opened a new
+ * connection; after, both reuse the connections of one pool.
+ *
+ * <p>Blocks, run it off the main thread.
+ */
+public final class HttpStackBenchmark {
+
+    private static final String TAG = "HttpStackBenchmark";
+
+    private static final int COVER_BYTES = 64 * 1024;
+    private static final int VIDEO_RANGE_BYTES = 256 * 1024;
+    private static final long VIDEO_BYTES = 16L * VIDEO_RANGE_BYTES;
+
+    private final int requests;
+    private final int connectDelayMs;
+
+    public HttpStackBenchmark(int requests, int connectDelayMs) {
+        this.requests = requests;
+        this.connectDelayMs = connectDelayMs;
+    }
+
+    /**
+     * Runs both stacks and returns a summary, also logged.
+     */
+    public String run() throws IOException {
+        try (LocalServer server = new LocalServer(connectDelayMs)) {
+            String coverUrl = server.url("/cover.png");
+            String videoUrl = server.url("/video.mp4");
+
+            // Before: Glide's own client for covers, the player's data source per range request.
+            OkHttpClient coverClient = HttpClients.newBuilder().build();
+            long[] before = measure(coverClient, new HttpUrlOrigin(), coverUrl, videoUrl, true);
+            int beforeConnections = server.getConnectionCount();
+
+            OkHttpClient shared = HttpClients.newBuilder().build();
+            long[] after = measure(shared, new OkHttpOrigin(shared), coverUrl, videoUrl, false);
+            int afterConnections = server.getConnectionCount() - beforeConnections;
+
+            String summary = "Separate stacks: " + describe(before) + ", " + beforeConnections + " connections\n"
+                    + "Shared client: " + describe(after) + ", " + afterConnections + " connections";
+            Log.i(TAG, summary);
+            return summary;
+        }
+    }
+
+    private long[] measure(OkHttpClient coverClient, VideoOrigin videoOrigin, String coverUrl, String videoUrl,
+                           boolean closeVideoConnections) throws IOException {
+        byte[] buffer = new byte[16 * 1024];
+        long[] latencyNs = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            long start = System.nanoTime();
+            if (i % 2 == 0) {
+                try (Response response = coverClient.newCall(new Request.Builder().url(coverUrl).build()).execute()) {
+                    drain(response.body().byteStream(), buffer, Long.MAX_VALUE);
+                }
+            } else {
+                long offset = (i / 2 % (VIDEO_BYTES / VIDEO_RANGE_BYTES)) * VIDEO_RANGE_BYTES;
+                String url = closeVideoConnections ? videoUrl + "?close" : videoUrl;
+                try (VideoOrigin.Connection connection = videoOrigin.open(url, offset, offset + VIDEO_RANGE_BYTES)) {
+                    drain(connection.getBody(), buffer, VIDEO_RANGE_BYTES);
+                }
+            }
+            latencyNs[i] = System.nanoTime() - start;
+        }
+        return latencyNs;
+    }
+
+    private static void drain(InputStream in, byte[] buffer, long max) throws IOException {
+        long read = 0;
+        int n;
+        while (read < max && (n = in.read(buffer, 0, (int) Math.min(buffer.length, max - read))) >= 0) {
+            read += n;
+        }
+    }
+
+    private static String describe(long[] latencyNs) {
+        long[] sorted = latencyNs.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long ns : sorted) {
+            total += ns;
+        }
+        return String.format("mean %.1f ms, p50 %.1f ms, p90 %.1f ms, max %.1f ms",
+                total / 1e6 / sorted.length,
+                sorted[sorted.length / 2] / 1e6,
+                sorted[sorted.length * 9 / 10] / 1e6,
+                sorted[sorted.length - 1] / 1e6);
+    }
+
+    /**
+     * Minimal keep-alive HTTP/1.1 server serving a cover and a range-addressable video of zeros. A
+     * {@code ?close} query closes the connection after the response.
+     */
+    private static final class LocalServer implements AutoCloseable {
+        private final ServerSocket serverSocket;
+        private final int connectDelayMs;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private volatile int connectionCount;
+
+        LocalServer(int connectDelayMs) throws IOException {
+            this.connectDelayMs = connectDelayMs;
+            serverSocket = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+            executor.execute(this::accept);
+        }
+
+        String url(String path) {
+            return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+        }
+
+        int getConnectionCount() {
+            return connectionCount;
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connectionCount++;
+                    executor.execute(() -> serve(socket));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (Socket client = socket) {
+                Thread.sleep(connectDelayMs);
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(client.getInputStream(), StandardCharsets.ISO_8859_1));
+                OutputStream out = client.getOutputStream();
+                byte[] zeros = new byte[16 * 1024];
+                String requestLine;
+                while ((requestLine = reader.readLine()) != null) {
+                    long rangeStart = -1;
+                    long rangeEnd = VIDEO_BYTES;
+                    String line;
+                    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                        if (line.regionMatches(true, 0, "Range: bytes=", 0, 13)) {
+                            int dash = line.indexOf('-');
+                            rangeStart = Long.parseLong(line.substring(13, dash));
+                            if (dash + 1 < line.length()) {
+                                rangeEnd = Long.parseLong(line.substring(dash + 1)) + 1;
+                            }
+                        }
+                    }
+                    boolean close = requestLine.contains("?close");
+                    boolean video = requestLine.contains("/video.mp4");
+                    long start = Math.max(0, rangeStart);
+                    long length = video ? rangeEnd - start : COVER_BYTES;
+                    StringBuilder headers = new StringBuilder(video && rangeStart >= 0
+                            ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n")
+                            .append("Content-Type: ").append(video ? "video/mp4" : "image/png").append("\r\n")
+                            .append("Content-Length: ").append(length).append("\r\n");
+                    if (video && rangeStart >= 0) {
+                        headers.append("Content-Range: bytes ").append(start).append('-')
+                                .append(rangeEnd - 1).append('/').append(VIDEO_BYTES).append("\r\n");
+                    }
+                    headers.append(close ? "Connection: close\r\n\r\n" : "\r\n");
+                    out.write(headers.toString().getBytes(StandardCharsets.ISO_8859_1));
+                    for (long left = length; left > 0; left -= zeros.length) {
+                        out.write(zeros, 0, (int) Math.min(zeros.length, left));
+                    }
+                    out.flush();
+                    if (close) {
+                        return;
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // Client went away, e.g. after reading only a range of the video.
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            executor.shutdownNow();
+        }
+    }
+}
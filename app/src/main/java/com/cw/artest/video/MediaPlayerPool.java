@@ -0,0 +1,198 @@
+package com.cw.artest.video;
+
+import android.content.Context;
+import android.media.MediaPlayer;
+import android.util.Log;
+import android.view.Surface;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Every MediaPlayer holds a hardware decoder, so the number of players playing a raw video
+ * resource at the same time is capped. Players are created lazily up to the cap, bound to the surface
+ * of whoever holds them and reused once released.
+ *
+ * <p>Each request gets a {@link Lease}. When there are more leases than players, the leases with
+ * the highest priority hold the players; a lease that loses its player to a higher priority one is
+ * told through {@link Listener#onPlayerRevoked} and gets a player back as soon as one is free.
+ *
+ * <p>Not thread safe, use from the main thread only.
+ */
+public class MediaPlayerPool {
+
+    private static final String TAG = "MediaPlayerPool";
+
+    private final Context context;
+    private final int rawResId;
+    private final int maxPlayers;
+
+    private final List<MediaPlayer> idlePlayers = new ArrayList<>();
+    private final List<Lease> leases = new ArrayList<>();
+    private int createdCount;
+
+    public interface Listener {
+        /**
+         * The player is bound to the lease's surface and can be started.
+         */
+        void onPlayerAssigned(MediaPlayer player);
+
+        /**
+         * The player was paused and handed to a lease with a higher priority.
+         */
+        void onPlayerRevoked(MediaPlayer player);
+    }
+
+    public final class Lease {
+        private final Surface surface;
+        private final Listener listener;
+        private int priority;
+        private MediaPlayer player;
+        private boolean released;
+
+        private Lease(Surface surface, Listener listener, int priority) {
+            this.surface = surface;
+            this.listener = listener;
+            this.priority = priority;
+        }
+
+        /**
+         * Returns the player currently bound to this lease, or null while waiting for one.
+         */
+        public MediaPlayer getPlayer() {
+            return player;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public void setPriority(int priority) {
+            if (released || this.priority == priority) {
+                return;
+            }
+            this.priority = priority;
+            rebalance();
+        }
+
+        /**
+         * Gives the player back to the pool. The lease cannot be used afterwards.
+         */
+        public void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            leases.remove(this);
+            if (player != null) {
+                recycle(player);
+                player = null;
+            }
+            rebalance();
+        }
+    }
+
+    public MediaPlayerPool(Context context, int rawResId, int maxPlayers) {
+        this.context = context.getApplicationContext();
+        this.rawResId = rawResId;
+        this.maxPlayers = maxPlayers;
+    }
+
+    /**
+     * Requests a player for {@code surface}. If one is available it is assigned before this method
+     * returns, otherwise the lease waits or preempts a lease with a lower priority.
+     */
+    public Lease request(Surface surface, int priority, Listener listener) {
+        Lease lease = new Lease(surface, listener, priority);
+        leases.add(lease);
+        rebalance();
+        return lease;
+    }
+
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    /**
+     * Revokes every lease and releases all players, e.g. when the activity is destroyed.
+     */
+    public void releaseAll() {
+        for (Lease lease : leases) {
+            lease.released = true;
+            if (lease.player != null) {
+                MediaPlayer player = lease.player;
+                lease.player = null;
+                recycle(player);
+                lease.listener.onPlayerRevoked(player);
+            }
+        }
+        leases.clear();
+        for (MediaPlayer player : idlePlayers) {
+            player.release();
+        }
+        idlePlayers.clear();
+        createdCount = 0;
+    }
+
+    private void rebalance() {
+        // Listeners may release or reprioritize leases, so work on a copy.
+        List<Lease> ranked = new ArrayList<>(leases);
+        // Stable sort, so earlier requests win ties.
+        Collections.sort(ranked, (a, b) -> Integer.compare(b.priority, a.priority));
+
+        // Take players away from leases that dropped out of the top first.
+        for (int i = maxPlayers; i < ranked.size(); i++) {
+            Lease lease = ranked.get(i);
+            if (lease.player != null && !lease.released) {
+                MediaPlayer player = lease.player;
+                lease.player = null;
+                recycle(player);
+                Log.d(TAG, "Preempted lease with priority " + lease.priority);
+                lease.listener.onPlayerRevoked(player);
+            }
+        }
+        for (int i = 0; i < ranked.size() && i < maxPlayers; i++) {
+            Lease lease = ranked.get(i);
+            if (lease.player == null && !lease.released) {
+                MediaPlayer player = obtain();
+                if (player == null) {
+                    break;
+                }
+                player.setSurface(lease.surface);
+                lease.player = player;
+                lease.listener.onPlayerAssigned(player);
+            }
+        }
+    }
+
+    private MediaPlayer obtain() {
+        if (!idlePlayers.isEmpty()) {
+            return idlePlayers.remove(idlePlayers.size() - 1);
+        }
+        if (createdCount >= maxPlayers) {
+            return null;
+        }
+        MediaPlayer player = MediaPlayer.create(context, rawResId);
+        if (player == null) {
+            Log.e(TAG, "Cannot create MediaPlayer");
+            return null;
+        }
+        player.setLooping(true);
+        createdCount++;
+        return player;
+    }
+
+    private void recycle(MediaPlayer player) {
+        if (player.isPlaying()) {
+            player.pause();
+        }
+        player.seekTo(0);
+        player.setSurface(null);
+        idlePlayers.add(player);
+    }
+}
@@ -2,11 +2,13 @@ package com.cw.artest.video;
 
 import android.content.pm.ActivityInfo;
 import android.os.Bundle;
+import android.util.DisplayMetrics;
 import android.view.View;
 import android.widget.ImageView;
 
 import com.bumptech.glide.Glide;
 import com.cw.artest.R;
+import com.cw.artest.video.cache.VideoCaches;
 import com.shuyu.gsyvideoplayer.utils.OrientationUtils;
 
 import androidx.appcompat.app.AppCompatActivity;
@@ -25,6 +27,9 @@ public class PlayPickActivity extends AppCompatActivity {
     public final static String VIDEO_CACHE_WITH_PLAY = "video_cache_with_play";
     public final static String IMG_TRANSITION = "img_transition";
 
+    //封面取视频开头这一帧
+    private static final long THUMBNAIL_TIME_MS = 1000;
+
     SmartPickVideo videoPlayer;
     OrientationUtils orientationUtils;
     private String mVideoUrl;
@@ -47,12 +52,25 @@ public class PlayPickActivity extends AppCompatActivity {
     }
 
     private void init() {
-        videoPlayer.setUp(mVideoUrl, mCacheWithPlay, mTitle);
+        //缓存交给VideoCacheServer，有容量上限，并且能用上识别图片时预取的部分
+        String url = mCacheWithPlay ? VideoCaches.getProxyUrl(this, mVideoUrl) : mVideoUrl;
+        videoPlayer.setUp(url, false, mTitle);
 
-        //增加封面
+        //增加封面，优先从已缓存的视频里截取，网络封面只作为兜底
         ImageView imageView = new ImageView(this);
         imageView.setScaleType(ImageView.ScaleType.CENTER_CROP);
-        Glide.with(this).load(mCover).into(imageView);
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        VideoThumbnails.getInstance(this).load(mVideoUrl, THUMBNAIL_TIME_MS,
+                metrics.widthPixels, metrics.heightPixels, thumbnail -> {
+                    if (isDestroyed()) {
+                        return;
+                    }
+                    if (thumbnail != null) {
+                        imageView.setImageBitmap(thumbnail);
+                    } else if (mCover != null) {
+                        Glide.with(this).load(mCover).into(imageView);
+                    }
+                });
         videoPlayer.setThumbImageView(imageView);
 
         //增加title
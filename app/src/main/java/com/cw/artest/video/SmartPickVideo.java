@@ -104,6 +104,22 @@ public class SmartPickVideo extends StandardGSYVideoPlayer {
         }
     }
 
+    /**
+     * 切换清晰度: continues with {@code url} from the current position. The current frame stays on
+     * screen while the new stream is prepared.
+     */
+    public void switchUrl(String url, boolean play) {
+        if (url.equals(mUrl)) {
+            return;
+        }
+        long position = getCurrentPositionWhenPlaying();
+        setUp(url, mCache, mTitle);
+        setSeekOnStart(position);
+        if (play) {
+            startPlayLogic();
+        }
+    }
+
     public String getUrl() {
         return mUrl;
     }
@@ -0,0 +1,212 @@
+package com.cw.artest.video;
+
+import android.content.Context;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import com.cw.artest.metrics.Metrics;
+import com.cw.artest.video.cache.VideoCache;
+import com.cw.artest.video.cache.VideoCacheServer;
+import com.cw.artest.video.cache.VideoCaches;
+
+import java.io.IOException;
+
+/**
+ * Decodes a video straight into a {@link Surface}, e.g. the one of a Sceneform ExternalTexture,
+ * without inflating a player view. Offers the same mute, loop and cache-while-playing controls as
+ * {@link SmartPickVideo}; network videos go through {@link VideoCacheServer}, so they share the
+ * cached and prefetched bytes with the player views.
+ *
+ * <p>Not thread safe, use from the main thread only.
+ */
+public class TextureVideoSource {
+
+    private static final String TAG = "TextureVideoSource";
+
+    public interface Listener {
+        /**
+         * The first frame was rendered to the surface, {@code elapsedMs} after {@link #prepare} was
+         * called. {@code fromCache} tells whether the start of the video was cached by then.
+         */
+        void onFirstFrame(long elapsedMs, boolean fromCache);
+
+        void onError(String url, int what, int extra);
+    }
+
+    private final Context context;
+    private final MediaPlayer player = new MediaPlayer();
+    private String url;
+    private Surface surface;
+    private boolean cacheWithPlay = true;
+    private boolean mute;
+    private boolean looping = true;
+    private boolean prepared;
+    private boolean playWhenReady;
+    private boolean released;
+    private int seekOnStartMs;
+    private long prepareStartMs;
+    private boolean preparedFromCache;
+    private Listener listener;
+
+    public TextureVideoSource(Context context, String url) {
+        this.context = context.getApplicationContext();
+        this.url = url;
+        player.setOnPreparedListener(mp -> onPrepared());
+        player.setOnInfoListener((mp, what, extra) -> {
+            if (what == MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START && listener != null) {
+                listener.onFirstFrame(SystemClock.elapsedRealtime() - prepareStartMs, preparedFromCache);
+            }
+            return false;
+        });
+        player.setOnErrorListener((mp, what, extra) -> {
+            Log.w(TAG, "Cannot play " + this.url + ": " + what + ", " + extra);
+            prepared = false;
+            if (listener != null) {
+                listener.onError(this.url, what, extra);
+            }
+            return true;
+        });
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Whether network videos are cached while playing. Takes effect with the next {@link #prepare}.
+     */
+    public void setCacheWithPlay(boolean cacheWithPlay) {
+        this.cacheWithPlay = cacheWithPlay;
+    }
+
+    public void setSurface(Surface surface) {
+        this.surface = surface;
+        if (!released) {
+            player.setSurface(surface);
+        }
+    }
+
+    public void setMute(boolean mute) {
+        this.mute = mute;
+        if (!released) {
+            float volume = mute ? 0f : 1f;
+            player.setVolume(volume, volume);
+        }
+    }
+
+    public boolean isMute() {
+        return mute;
+    }
+
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+        if (!released) {
+            player.setLooping(looping);
+        }
+    }
+
+    /**
+     * Starts preparing the video in the background.
+     */
+    public void prepare() {
+        if (released) {
+            return;
+        }
+        String playUrl = playUrl();
+        try {
+            player.setDataSource(context, Uri.parse(playUrl));
+        } catch (IOException | IllegalStateException e) {
+            Log.w(TAG, "Cannot open " + url, e);
+            if (listener != null) {
+                listener.onError(url, MediaPlayer.MEDIA_ERROR_UNKNOWN, MediaPlayer.MEDIA_ERROR_IO);
+            }
+            return;
+        }
+        // Reset with the player when switching streams.
+        player.setSurface(surface);
+        player.setLooping(looping);
+        setMute(mute);
+        prepareStartMs = SystemClock.elapsedRealtime();
+        // Streamed directly while the cache server is still starting.
+        preparedFromCache = !playUrl.equals(url) && VideoCaches.getIfStarted(context).isCached(url);
+        player.prepareAsync();
+    }
+
+    /**
+     * Plays the video, as soon as it is prepared.
+     */
+    public void start() {
+        playWhenReady = true;
+        if (prepared) {
+            player.start();
+        }
+    }
+
+    public void pause() {
+        playWhenReady = false;
+        if (prepared && player.isPlaying()) {
+            player.pause();
+        }
+    }
+
+    public boolean isPlaying() {
+        return prepared && player.isPlaying();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Continues with another stream of the same video, e.g. another bitrate, from the current
+     * position. The last frame stays on the surface while the new stream is prepared.
+     */
+    public void switchUrl(String url) {
+        if (released || url.equals(this.url)) {
+            return;
+        }
+        seekOnStartMs = prepared ? player.getCurrentPosition() : seekOnStartMs;
+        this.url = url;
+        prepared = false;
+        player.reset();
+        prepare();
+    }
+
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        prepared = false;
+        player.release();
+    }
+
+    private void onPrepared() {
+        if (released) {
+            return;
+        }
+        prepared = true;
+        Metrics.VIDEO_PREPARE.recordMicros((SystemClock.elapsedRealtime() - prepareStartMs) * 1000);
+        VideoCacheServer server = cacheWithPlay ? VideoCaches.getIfStarted(context) : null;
+        if (server != null && url.startsWith("http")) {
+            server.getCache().setDuration(VideoCache.keyOf(url), player.getDuration());
+        }
+        if (seekOnStartMs > 0) {
+            player.seekTo(seekOnStartMs);
+            seekOnStartMs = 0;
+        }
+        if (playWhenReady) {
+            player.start();
+        }
+    }
+
+    private String playUrl() {
+        if (cacheWithPlay && url.startsWith("http")) {
+            return VideoCaches.getProxyUrl(context, url);
+        }
+        return url;
+    }
+}
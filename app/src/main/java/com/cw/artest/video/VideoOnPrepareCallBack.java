@@ -1,5 +1,6 @@
 package com.cw.artest.video;
 
+import com.cw.artest.metrics.Metrics;
 import com.shuyu.gsyvideoplayer.listener.VideoAllCallBack;
 
 /**
@@ -7,9 +8,23 @@ import com.shuyu.gsyvideoplayer.listener.VideoAllCallBack;
  * @date 2021/3/8
  */
 public abstract class VideoOnPrepareCallBack implements VideoAllCallBack {
+
+    private long prepareStartNs;
+
     @Override
     public void onStartPrepared(String url, Object... objects) {
+        prepareStartNs = System.nanoTime();
+    }
 
+    /**
+     * Records the prepare latency, overrides must call super.
+     */
+    @Override
+    public void onPrepared(String url, Object... objects) {
+        if (prepareStartNs != 0) {
+            Metrics.VIDEO_PREPARE.recordSince(prepareStartNs);
+            prepareStartNs = 0;
+        }
     }
 
     @Override
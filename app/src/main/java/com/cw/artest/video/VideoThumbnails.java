@@ -0,0 +1,193 @@
+package com.cw.artest.video;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.cw.artest.video.cache.VideoCache;
+import com.cw.artest.video.cache.VideoCacheServer;
+import com.cw.artest.video.cache.VideoCaches;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Extracts poster frames from the start of videos that {@link VideoCacheServer} has cached, e.g.
+ * prefetched while the image was detected, so the player needs no separate cover download. Frames are
+ * scaled to the display size and kept in a memory and a disk cache keyed by URL and timestamp.
+ *
+ * <p>Use from the main thread; callbacks are delivered there too.
+ */
+public class VideoThumbnails {
+
+    private static final String TAG = "VideoThumbnails";
+
+    public interface Callback {
+        /**
+         * Delivers the frame, or null if the video is not cached yet or cannot be decoded; show the
+         * network cover then.
+         */
+        void onThumbnail(Bitmap thumbnail);
+    }
+
+    private static final String DISK_DIR = "thumbnails";
+    private static final int MAX_DISK_FILES = 64;
+    private static final int JPEG_QUALITY = 85;
+
+    private static VideoThumbnails instance;
+
+    private final Context context;
+    private final File diskDir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final LruCache<String, Bitmap> memory;
+
+    private VideoThumbnails(Context context) {
+        this.context = context.getApplicationContext();
+        diskDir = new File(this.context.getCacheDir(), DISK_DIR);
+        // 1/16 of the heap, a handful of screen sized posters.
+        int maxKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 16);
+        memory = new LruCache<String, Bitmap>(maxKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+    }
+
+    public static synchronized VideoThumbnails getInstance(Context context) {
+        if (instance == null) {
+            instance = new VideoThumbnails(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the frame at {@code timeMs} of {@code url}, at most {@code maxWidth} by {@code maxHeight}
+     * pixels.
+     */
+    public void load(String url, long timeMs, int maxWidth, int maxHeight, Callback callback) {
+        String key = keyOf(url, timeMs);
+        Bitmap cached = memory.get(key);
+        if (cached != null && fits(cached, maxWidth, maxHeight)) {
+            callback.onThumbnail(cached);
+            return;
+        }
+        executor.execute(() -> {
+            Bitmap thumbnail = readDisk(key, maxWidth, maxHeight);
+            VideoCacheServer cacheServer = thumbnail == null ? VideoCaches.start(context) : null;
+            if (cacheServer != null && cacheServer.isCached(url)) {
+                thumbnail = extract(cacheServer.getProxyUrl(url), timeMs, maxWidth, maxHeight);
+                if (thumbnail != null) {
+                    writeDisk(key, thumbnail);
+                }
+            }
+            Bitmap result = thumbnail;
+            mainHandler.post(() -> {
+                if (result != null) {
+                    memory.put(key, result);
+                }
+                callback.onThumbnail(result);
+            });
+        });
+    }
+
+    private static String keyOf(String url, long timeMs) {
+        return VideoCache.keyOf(url) + "_" + timeMs;
+    }
+
+    /**
+     * Whether a cached frame is large enough for the requested size. Up to half the size is still fine
+     * for a poster shown until playback starts.
+     */
+    private static boolean fits(Bitmap bitmap, int maxWidth, int maxHeight) {
+        return bitmap.getWidth() * 2 >= maxWidth || bitmap.getHeight() * 2 >= maxHeight;
+    }
+
+    private static Bitmap extract(String url, long timeMs, int maxWidth, int maxHeight) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            // Read through the cache server, the start of the video is on disk.
+            retriever.setDataSource(url, new HashMap<>());
+            long timeUs = timeMs * 1000;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                return retriever.getScaledFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC,
+                        maxWidth, maxHeight);
+            }
+            Bitmap frame = retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            return frame != null ? scaleDown(frame, maxWidth, maxHeight) : null;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Cannot extract a frame of " + url, e);
+            return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (RuntimeException e) {
+                // Released anyway.
+            }
+        }
+    }
+
+    private static Bitmap scaleDown(Bitmap frame, int maxWidth, int maxHeight) {
+        float scale = Math.min((float) maxWidth / frame.getWidth(), (float) maxHeight / frame.getHeight());
+        if (scale >= 1f) {
+            return frame;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(frame, Math.round(frame.getWidth() * scale),
+                Math.round(frame.getHeight() * scale), true);
+        frame.recycle();
+        return scaled;
+    }
+
+    private Bitmap readDisk(String key, int maxWidth, int maxHeight) {
+        File file = new File(diskDir, key + ".jpg");
+        if (!file.exists()) {
+            return null;
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap == null || !fits(bitmap, maxWidth, maxHeight)) {
+            // Extracted for a smaller display, extract again.
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return bitmap;
+    }
+
+    private void writeDisk(String key, Bitmap thumbnail) {
+        if (!diskDir.exists() && !diskDir.mkdirs()) {
+            return;
+        }
+        File file = new File(diskDir, key + ".jpg");
+        try (OutputStream out = new FileOutputStream(file)) {
+            thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write " + file, e);
+            file.delete();
+            return;
+        }
+        trimDisk();
+    }
+
+    private void trimDisk() {
+        File[] files = diskDir.listFiles();
+        if (files == null || files.length <= MAX_DISK_FILES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - MAX_DISK_FILES; i++) {
+            files[i].delete();
+        }
+    }
+}
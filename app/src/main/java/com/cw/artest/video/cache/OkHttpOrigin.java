@@ -0,0 +1,92 @@
+package com.cw.artest.video.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Fetches video bytes with range requests on a shared {@link OkHttpClient}, so they reuse the
+ * connections of everything else loaded from the same CDN.
+ */
+public class OkHttpOrigin implements VideoOrigin {
+
+    // The bytes are cached by VideoCache, keep them out of the HTTP cache.
+    private static final CacheControl NO_STORE = new CacheControl.Builder().noStore().build();
+
+    private final OkHttpClient client;
+
+    public OkHttpOrigin(OkHttpClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public Connection open(String url, long start, long end) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Range", VideoOrigin.range(start, end))
+                .cacheControl(NO_STORE)
+                .build();
+        Response response = client.newCall(request).execute();
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            response.close();
+            throw new IOException("HTTP " + response.code() + " for " + url);
+        }
+        InputStream in = body.byteStream();
+        long totalLength;
+        if (response.code() == 206) {
+            totalLength = HttpUrlOrigin.parseTotalLength(response.header("Content-Range"));
+        } else {
+            totalLength = body.contentLength();
+            // The server ignored the range, skip to the start.
+            long skipped = 0;
+            while (skipped < start) {
+                long n = in.skip(start - skipped);
+                if (n <= 0) {
+                    response.close();
+                    throw new IOException("Cannot skip to " + start + " of " + url);
+                }
+                skipped += n;
+            }
+        }
+        return new ResponseConnection(response, in, totalLength);
+    }
+
+    private static final class ResponseConnection implements Connection {
+        private final Response response;
+        private final InputStream body;
+        private final long totalLength;
+
+        ResponseConnection(Response response, InputStream body, long totalLength) {
+            this.response = response;
+            this.body = body;
+            this.totalLength = totalLength;
+        }
+
+        @Override
+        public long getTotalLength() {
+            return totalLength;
+        }
+
+        @Override
+        public String getContentType() {
+            return response.header("Content-Type");
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() {
+            // Returns the connection to the pool if the body was read to the end.
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.cw.artest.video.cache;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.cw.artest.net.HttpClients;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The app-wide {@link VideoCacheServer}, caching to the cache dir and fetching with the shared
+ * OkHttp client.
+ *
+ * <p>Starting it loads the cache index from disk and binds a socket, so it is started in the
+ * background, by ArStartup's pre-warm or on first use. Until it runs, {@link #getIfStarted} returns
+ * null and videos are streamed directly.
+ */
+public final class VideoCaches {
+
+    private static final String TAG = "VideoCacheServer";
+
+    private static final String CACHE_DIR = "video";
+    private static final long DEFAULT_BUDGET_BYTES = 256L * 1024 * 1024;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "VideoCaches");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private static volatile VideoCacheServer instance;
+    private static boolean startRequested;
+
+    private VideoCaches() {
+    }
+
+    /**
+     * Starts the server in the background, once per process. Safe to call from the main thread.
+     */
+    public static void startAsync(Context context) {
+        synchronized (VideoCaches.class) {
+            if (startRequested) {
+                return;
+            }
+            startRequested = true;
+        }
+        Context appContext = context.getApplicationContext();
+        EXECUTOR.execute(() -> start(appContext));
+    }
+
+    /**
+     * The app-wide server, started on the calling thread unless it runs already. Does disk and socket
+     * I/O, so never call it from the main thread.
+     */
+    public static synchronized VideoCacheServer start(Context context) {
+        if (instance == null) {
+            CacheLog.setSink((priority, tag, message, throwable) -> Log.println(priority, tag,
+                    throwable != null ? message + '\n' + Log.getStackTraceString(throwable) : message));
+            File dir = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR);
+            VideoCacheServer server = new VideoCacheServer(new VideoCache(dir, DEFAULT_BUDGET_BYTES),
+                    new OkHttpOrigin(HttpClients.get(context)));
+            try {
+                server.start();
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot start video cache server, videos are streamed directly", e);
+            }
+            instance = server;
+        }
+        return instance;
+    }
+
+    /**
+     * The app-wide server, or null while it is starting. Starts it in the background if nobody did.
+     */
+    public static VideoCacheServer getIfStarted(Context context) {
+        VideoCacheServer server = instance;
+        if (server == null) {
+            startAsync(context);
+        }
+        return server;
+    }
+
+    /**
+     * Returns the URL to play {@code url} through the cache, or {@code url} itself while the server is
+     * starting.
+     */
+    public static String getProxyUrl(Context context, String url) {
+        VideoCacheServer server = getIfStarted(context);
+        return server != null ? server.getProxyUrl(url) : url;
+    }
+
+    /**
+     * Like {@link VideoCacheServer#prefetch}, once the server runs.
+     */
+    public static void prefetch(Context context, String url, int seconds) {
+        Context appContext = context.getApplicationContext();
+        EXECUTOR.execute(() -> start(appContext).prefetch(url, seconds));
+    }
+}
@@ -0,0 +1,191 @@
+package com.cw.artest.tracking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of {@link TrackingEngine} with 1 to 1000 attached images, the part of
+ * AugmentedImageActivity.onUpdateFrame that does not depend on ARCore or Sceneform.
+ *
+ * <p>Run with {@code ./gradlew :tracking-core:jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrackingEngineBenchmark {
+
+    // Simulated frame time, ARCore runs at 30 fps.
+    private static final long FRAME_MS = 33;
+
+    private static final float HIGH_DETAIL_COVERAGE_PIXELS = 160 * 160;
+
+    // Frames between flips of the tracking method in trackingMethodChurn, long enough for the content
+    // to be suspended after the lost delay and resumed after the regained delay.
+    static final int CHURN_HALF_PERIOD_FRAMES = (int) Math.max(16,
+            Math.max(TrackingEngine.DEFAULT_LOST_DELAY_MS, TrackingEngine.DEFAULT_REGAINED_DELAY_MS) / FRAME_MS + 2);
+
+    @Param({"1", "10", "100", "1000"})
+    public int images;
+
+    private Scene scene;
+    private final LevelOfDetail levelOfDetail = new LevelOfDetail(HIGH_DETAIL_COVERAGE_PIXELS);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        checkChurnSuspends();
+        scene = new Scene(images);
+    }
+
+    /**
+     * Fails unless churning both suspends and resumes content within three flips, i.e. unless the
+     * period covers the delays. Runs on a scene of its own so the measured one starts fresh.
+     */
+    private static void checkChurnSuspends() {
+        Scene check = new Scene(1);
+        for (int i = 0; i < CHURN_HALF_PERIOD_FRAMES * 3; i++) {
+            check.churnFrame();
+        }
+        check.engine.releaseAll();
+        if (check.activeChanges < 2) {
+            throw new IllegalStateException("Churn period of " + CHURN_HALF_PERIOD_FRAMES
+                    + " frames does not suspend and resume content, " + check.activeChanges + " setActive calls");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scene.engine.releaseAll();
+    }
+
+    /**
+     * All images fully tracked and reported every frame, nothing changes state.
+     */
+    @Benchmark
+    public void steadyFrame(Blackhole blackhole) {
+        scene.runFrame();
+        blackhole.consume(scene.engine.getTable().getAttachedCount());
+    }
+
+    /**
+     * One image in ten alternates between full tracking and its last known pose every
+     * {@link #CHURN_HALF_PERIOD_FRAMES} frames, suspending and resuming its content once the delays
+     * passed.
+     */
+    @Benchmark
+    public void trackingMethodChurn(Blackhole blackhole) {
+        scene.churnFrame();
+        blackhole.consume(scene.activeChanges);
+    }
+
+    /**
+     * The detail level pass the activity runs after culling, with coverages around the threshold.
+     */
+    @Benchmark
+    public void detailLevels(Blackhole blackhole) {
+        scene.runFrame();
+        ImageStateTable<ContentSlot> table = scene.engine.getTable();
+        int changed = 0;
+        for (int i = 0, capacity = table.getCapacity(); i < capacity; i++) {
+            ContentSlot slot = table.getSlot(i);
+            if (slot == null) {
+                continue;
+            }
+            float coverage = HIGH_DETAIL_COVERAGE_PIXELS * (((i + scene.frame) & 3) * 0.5f);
+            int level = levelOfDetail.select(table.getDetailLevel(i), coverage);
+            if (table.setDetailLevel(i, level)) {
+                slot.setDetailLevel(level);
+                changed++;
+            }
+        }
+        blackhole.consume(changed);
+    }
+
+    /**
+     * An engine with all of its images attached and fully tracked, and the simulated clock.
+     */
+    private static final class Scene implements TrackingEngine.Binder<MutableTrackable, ContentSlot> {
+        final TrackingEngine<MutableTrackable, ContentSlot> engine = new TrackingEngine<>(this);
+        final MutableTrackable[] trackables;
+        long nowMs;
+        int frame;
+        int activeChanges;
+
+        Scene(int images) {
+            trackables = new MutableTrackable[images];
+            for (int i = 0; i < images; i++) {
+                trackables[i] = new MutableTrackable(i);
+                trackables[i].set(TrackingState.PAUSED, true, 0.2f, 0.3f);
+            }
+            // Detect, then track every image, so the measured frames start with all of them attached.
+            runFrame();
+            for (MutableTrackable trackable : trackables) {
+                trackable.set(TrackingState.TRACKING, true, 0.2f, 0.3f);
+            }
+            runFrame();
+        }
+
+        void runFrame() {
+            nowMs += FRAME_MS;
+            frame++;
+            engine.beginFrame(nowMs);
+            for (MutableTrackable trackable : trackables) {
+                engine.update(trackable, nowMs);
+            }
+            engine.endFrame(nowMs);
+        }
+
+        void churnFrame() {
+            boolean full = (frame / CHURN_HALF_PERIOD_FRAMES) % 2 == 0;
+            for (int i = 0; i < trackables.length; i += 10) {
+                trackables[i].set(TrackingState.TRACKING, full, 0.2f, 0.3f);
+            }
+            runFrame();
+        }
+
+        @Override
+        public Content prepare(MutableTrackable trackable) {
+            return new StubContent(this);
+        }
+
+        @Override
+        public ContentSlot createSlot(MutableTrackable trackable) {
+            return new ContentSlot();
+        }
+
+        @Override
+        public void attach(MutableTrackable trackable, Content content, ContentSlot slot) {
+        }
+    }
+
+    private static final class StubContent implements Content {
+        private final Scene scene;
+
+        StubContent(Scene scene) {
+            this.scene = scene;
+        }
+
+        @Override
+        public void setActive(boolean active) {
+            scene.activeChanges++;
+        }
+
+        @Override
+        public void setDetailLevel(int level) {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
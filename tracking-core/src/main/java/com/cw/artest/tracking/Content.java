@@ -0,0 +1,27 @@
+package com.cw.artest.tracking;
+
+/**
+ * Content shown on one tracked image, as far as {@link TrackingEngine} drives it.
+ */
+public interface Content {
+
+    /**
+     * Called after the content was attached when it is suspended, e.g. because the image is only
+     * tracked by its last known pose, and when it may run again. Suspended content should stop
+     * decoding and animating but keep what it needs to resume quickly. The node is hidden by its
+     * {@link ContentSlot}.
+     */
+    void setActive(boolean active);
+
+    /**
+     * Called after the content was attached with one of the {@link LevelOfDetail} levels, picked from
+     * the size of the image on screen. Starts with {@link LevelOfDetail#HIGH}. Must not block,
+     * variants that are not loaded yet are swapped in once ready.
+     */
+    void setDetailLevel(int level);
+
+    /**
+     * Called exactly once, whether or not the content was attached.
+     */
+    void release();
+}
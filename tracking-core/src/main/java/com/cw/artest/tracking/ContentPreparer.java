@@ -0,0 +1,128 @@
+package com.cw.artest.tracking;
+
+import java.util.Arrays;
+
+/**
+ * Starts building the content of an image as soon as it is reported as PAUSED, i.e. detected but not
+ * yet tracked, so that it can be attached right away once tracking begins.
+ *
+ * <p>Prepared content is keyed by the index of the image in the database. Content that is not taken
+ * within the time to live is released.
+ */
+public final class ContentPreparer<T extends Trackable> {
+
+    /**
+     * Creates the content of an image and starts everything about it that takes time.
+     */
+    public interface Factory<T extends Trackable> {
+        /**
+         * Returns null if the image has no content.
+         */
+        Content prepare(T trackable);
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Factory<T> factory;
+    private final long timeToLiveMs;
+
+    // Prepared content and when it was created, addressed by image index.
+    private Content[] prepared = new Content[INITIAL_CAPACITY];
+    private long[] preparedAtMs = new long[INITIAL_CAPACITY];
+    private int preparedCount;
+    private int expiredCount;
+
+    public ContentPreparer(Factory<T> factory, long timeToLiveMs) {
+        this.factory = factory;
+        this.timeToLiveMs = timeToLiveMs;
+    }
+
+    /**
+     * Starts preparing the content for an image, unless it is already being prepared.
+     */
+    public void prepare(T trackable, long nowMs) {
+        int index = trackable.getIndex();
+        if (index < prepared.length && prepared[index] != null) {
+            return;
+        }
+        Content content = factory.prepare(trackable);
+        if (content != null) {
+            ensureCapacity(index);
+            prepared[index] = content;
+            preparedAtMs[index] = nowMs;
+            preparedCount++;
+        }
+    }
+
+    /**
+     * Hands over the prepared content of an image, preparing it now if nothing was prepared. Returns
+     * null if the image has no content.
+     */
+    public Content take(T trackable) {
+        Content content = remove(trackable.getIndex());
+        return content != null ? content : factory.prepare(trackable);
+    }
+
+    /**
+     * Releases the prepared content of an image, e.g. when it stopped before being tracked.
+     */
+    public void cancel(int imageIndex) {
+        Content content = remove(imageIndex);
+        if (content != null) {
+            content.release();
+        }
+    }
+
+    /**
+     * Releases content that has been waiting longer than the time to live.
+     */
+    public void expire(long nowMs) {
+        if (preparedCount == 0) {
+            return;
+        }
+        for (int i = 0; i < prepared.length; i++) {
+            if (prepared[i] != null && nowMs - preparedAtMs[i] > timeToLiveMs) {
+                expiredCount++;
+                remove(i).release();
+            }
+        }
+    }
+
+    public void cancelAll() {
+        for (int i = 0; i < prepared.length; i++) {
+            if (prepared[i] != null) {
+                remove(i).release();
+            }
+        }
+    }
+
+    public int getPreparedCount() {
+        return preparedCount;
+    }
+
+    /**
+     * Number of prepared contents released because their image was not tracked in time.
+     */
+    public int getExpiredCount() {
+        return expiredCount;
+    }
+
+    private Content remove(int index) {
+        if (index >= prepared.length || prepared[index] == null) {
+            return null;
+        }
+        Content content = prepared[index];
+        prepared[index] = null;
+        preparedCount--;
+        return content;
+    }
+
+    private void ensureCapacity(int index) {
+        if (index < prepared.length) {
+            return;
+        }
+        int capacity = Math.max(index + 1, prepared.length * 2);
+        prepared = Arrays.copyOf(prepared, capacity);
+        preparedAtMs = Arrays.copyOf(preparedAtMs, capacity);
+    }
+}
@@ -0,0 +1,92 @@
+package com.cw.artest.tracking;
+
+/**
+ * Owns everything created for one tracked image and tears it down in one place, when the image stops
+ * being tracked or everything is released. Subclasses add the platform resources, e.g. scene nodes,
+ * and hide them in {@link #onSuspendedChanged} and free them in {@link #onRelease}.
+ */
+public class ContentSlot {
+
+    // Reasons for suspending the content, any of them hides it.
+    public static final int SUSPENDED_TRACKING = 1;
+    public static final int SUSPENDED_CULLED = 2;
+
+    private Content content;
+    private boolean released;
+    private int suspendedReasons;
+
+    /**
+     * Sets the content attached to this image, released before the slot's own resources.
+     */
+    public void setContent(Content content) {
+        this.content = content;
+    }
+
+    public Content getContent() {
+        return content;
+    }
+
+    /**
+     * Hides the node and pauses the content while {@code reason} applies, see
+     * {@link Content#setActive}. Returns whether the content changed between running and suspended.
+     */
+    public boolean setSuspended(int reason, boolean suspended) {
+        if (released) {
+            return false;
+        }
+        boolean wasSuspended = suspendedReasons != 0;
+        if (suspended) {
+            suspendedReasons |= reason;
+        } else {
+            suspendedReasons &= ~reason;
+        }
+        boolean isSuspended = suspendedReasons != 0;
+        if (wasSuspended == isSuspended) {
+            return false;
+        }
+        onSuspendedChanged(isSuspended);
+        if (content != null) {
+            content.setActive(!isSuspended);
+        }
+        return true;
+    }
+
+    public void setDetailLevel(int level) {
+        if (!released && content != null) {
+            content.setDetailLevel(level);
+        }
+    }
+
+    public boolean isSuspended() {
+        return suspendedReasons != 0;
+    }
+
+    public boolean isReleased() {
+        return released;
+    }
+
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+
+        if (content != null) {
+            content.release();
+            content = null;
+        }
+        onRelease();
+    }
+
+    /**
+     * Called before the content is told, e.g. to hide the node of suspended content.
+     */
+    protected void onSuspendedChanged(boolean suspended) {
+    }
+
+    /**
+     * Called once, after the content was released.
+     */
+    protected void onRelease() {
+    }
+}
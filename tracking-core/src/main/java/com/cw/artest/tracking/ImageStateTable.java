@@ -0,0 +1,220 @@
+package com.cw.artest.tracking;
+
+import java.util.Arrays;
+
+/**
+ * Per-image state of the frame loop, addressed by {@link Trackable#getIndex()}.
+ *
+ * <p>Plain arrays indexed by the database index replace a map keyed by trackables, so looking up an
+ * image on the frame path neither hashes nor allocates. The arrays only grow when an image with a
+ * higher index than seen before shows up.
+ *
+ * <p>The table also filters the tracking method of attached images. Content is only considered lost
+ * once an image has been tracked by its last known pose for {@code lostDelayMs}, and found again once
+ * it has been fully tracked for {@code regainedDelayMs}, so brief drops do not make it flicker.
+ */
+public final class ImageStateTable<S extends ContentSlot> {
+
+    public static final int STATE_NONE = 0;
+    public static final int STATE_ATTACHED = 1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long lostDelayMs;
+    private final long regainedDelayMs;
+
+    private int[] states = new int[INITIAL_CAPACITY];
+    private ContentSlot[] slots = new ContentSlot[INITIAL_CAPACITY];
+    private int attachedCount;
+
+    // Last reported tracking method and since when it has been reported.
+    private boolean[] fullTracking = new boolean[INITIAL_CAPACITY];
+    private long[] trackingMethodSinceMs = new long[INITIAL_CAPACITY];
+    // Filtered tracking quality.
+    private boolean[] trackingLost = new boolean[INITIAL_CAPACITY];
+
+    // Last reported size of the image and the result of culling it.
+    private float[] extentX = new float[INITIAL_CAPACITY];
+    private float[] extentZ = new float[INITIAL_CAPACITY];
+    private boolean[] culled = new boolean[INITIAL_CAPACITY];
+    private float[] coveragePixels = new float[INITIAL_CAPACITY];
+    private int[] detailLevel = new int[INITIAL_CAPACITY];
+
+    public ImageStateTable(long lostDelayMs, long regainedDelayMs) {
+        this.lostDelayMs = lostDelayMs;
+        this.regainedDelayMs = regainedDelayMs;
+    }
+
+    public int getState(int index) {
+        return index < states.length ? states[index] : STATE_NONE;
+    }
+
+    public boolean isAttached(int index) {
+        return getState(index) == STATE_ATTACHED;
+    }
+
+    @SuppressWarnings("unchecked")
+    public S getSlot(int index) {
+        return index < slots.length ? (S) slots[index] : null;
+    }
+
+    public void attach(int index, S slot, long nowMs) {
+        ensureCapacity(index);
+        fullTracking[index] = true;
+        trackingMethodSinceMs[index] = nowMs;
+        trackingLost[index] = false;
+        culled[index] = false;
+        coveragePixels[index] = 0;
+        detailLevel[index] = LevelOfDetail.HIGH;
+        if (states[index] != STATE_ATTACHED) {
+            attachedCount++;
+        }
+        states[index] = STATE_ATTACHED;
+        slots[index] = slot;
+    }
+
+    /**
+     * Removes the image and returns its slot, which the caller releases, or null if it was not
+     * attached.
+     */
+    public S detach(int index) {
+        if (!isAttached(index)) {
+            return null;
+        }
+        S slot = getSlot(index);
+        states[index] = STATE_NONE;
+        slots[index] = null;
+        attachedCount--;
+        return slot;
+    }
+
+    /**
+     * Records the tracking method ARCore reported for an attached image.
+     */
+    public void setTrackingMethod(int index, boolean full, long nowMs) {
+        if (isAttached(index) && fullTracking[index] != full) {
+            fullTracking[index] = full;
+            trackingMethodSinceMs[index] = nowMs;
+        }
+    }
+
+    /**
+     * Advances the filtered tracking quality of an attached image. Returns true if it changed, see
+     * {@link #isTrackingLost}.
+     */
+    public boolean updateTrackingQuality(int index, long nowMs) {
+        if (!isAttached(index)) {
+            return false;
+        }
+        long elapsedMs = nowMs - trackingMethodSinceMs[index];
+        if (trackingLost[index] && fullTracking[index] && elapsedMs >= regainedDelayMs) {
+            trackingLost[index] = false;
+            return true;
+        }
+        if (!trackingLost[index] && !fullTracking[index] && elapsedMs >= lostDelayMs) {
+            trackingLost[index] = true;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isTrackingLost(int index) {
+        return index < trackingLost.length && trackingLost[index];
+    }
+
+    public void setExtents(int index, float x, float z) {
+        if (isAttached(index)) {
+            extentX[index] = x;
+            extentZ[index] = z;
+        }
+    }
+
+    public float getExtentX(int index) {
+        return extentX[index];
+    }
+
+    public float getExtentZ(int index) {
+        return extentZ[index];
+    }
+
+    /**
+     * Records the result of culling an attached image. Returns true if it was culled before and is
+     * not now, or the other way round.
+     */
+    public boolean setCulled(int index, boolean culled, float coveragePixels) {
+        this.coveragePixels[index] = coveragePixels;
+        if (this.culled[index] == culled) {
+            return false;
+        }
+        this.culled[index] = culled;
+        return true;
+    }
+
+    public boolean isCulled(int index) {
+        return index < culled.length && culled[index];
+    }
+
+    /**
+     * Projected size of the image in pixels when it was last culled.
+     */
+    public float getCoveragePixels(int index) {
+        return index < coveragePixels.length ? coveragePixels[index] : 0;
+    }
+
+    public int getDetailLevel(int index) {
+        return detailLevel[index];
+    }
+
+    /**
+     * Returns true if the level of an attached image changed.
+     */
+    public boolean setDetailLevel(int index, int level) {
+        if (detailLevel[index] == level) {
+            return false;
+        }
+        detailLevel[index] = level;
+        return true;
+    }
+
+    public int getAttachedCount() {
+        return attachedCount;
+    }
+
+    /**
+     * Exclusive upper bound of the indices that may be attached.
+     */
+    public int getCapacity() {
+        return states.length;
+    }
+
+    /**
+     * Releases the slots of every attached image and empties the table.
+     */
+    public void releaseAll() {
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] == STATE_ATTACHED) {
+                slots[i].release();
+            }
+        }
+        Arrays.fill(states, STATE_NONE);
+        Arrays.fill(slots, null);
+        attachedCount = 0;
+    }
+
+    private void ensureCapacity(int index) {
+        if (index < states.length) {
+            return;
+        }
+        int capacity = Math.max(index + 1, states.length * 2);
+        states = Arrays.copyOf(states, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+        fullTracking = Arrays.copyOf(fullTracking, capacity);
+        trackingMethodSinceMs = Arrays.copyOf(trackingMethodSinceMs, capacity);
+        trackingLost = Arrays.copyOf(trackingLost, capacity);
+        extentX = Arrays.copyOf(extentX, capacity);
+        extentZ = Arrays.copyOf(extentZ, capacity);
+        culled = Arrays.copyOf(culled, capacity);
+        coveragePixels = Arrays.copyOf(coveragePixels, capacity);
+        detailLevel = Arrays.copyOf(detailLevel, capacity);
+    }
+}
@@ -0,0 +1,33 @@
+package com.cw.artest.tracking;
+
+/**
+ * Picks the detail level of image content from the size the image is projected to on screen.
+ *
+ * <p>Content switches to {@link #HIGH} once the image covers {@link #HYSTERESIS} times
+ * {@code highCoveragePixels} and back to {@link #LOW} once it covers less than the threshold divided
+ * by the same factor, so an image right at the threshold does not keep switching.
+ */
+public final class LevelOfDetail {
+
+    // e.g. a static billboard instead of a model, a low bitrate stream.
+    public static final int LOW = 0;
+    public static final int HIGH = 1;
+
+    private static final float HYSTERESIS = 1.25f;
+
+    private final float highCoveragePixels;
+
+    public LevelOfDetail(float highCoveragePixels) {
+        this.highCoveragePixels = highCoveragePixels;
+    }
+
+    public int select(int currentLevel, float coveragePixels) {
+        if (currentLevel == LOW && coveragePixels >= highCoveragePixels * HYSTERESIS) {
+            return HIGH;
+        }
+        if (currentLevel == HIGH && coveragePixels < highCoveragePixels / HYSTERESIS) {
+            return LOW;
+        }
+        return currentLevel;
+    }
+}
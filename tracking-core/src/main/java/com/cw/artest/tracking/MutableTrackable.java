@@ -0,0 +1,50 @@
+package com.cw.artest.tracking;
+
+/**
+ * A {@link Trackable} whose state is set from outside, for driving {@link TrackingEngine} without a
+ * camera, e.g. in benchmarks.
+ */
+public class MutableTrackable implements Trackable {
+
+    private final int index;
+    private TrackingState trackingState = TrackingState.PAUSED;
+    private boolean fullTracking = true;
+    private float extentX;
+    private float extentZ;
+
+    public MutableTrackable(int index) {
+        this.index = index;
+    }
+
+    public void set(TrackingState trackingState, boolean fullTracking, float extentX, float extentZ) {
+        this.trackingState = trackingState;
+        this.fullTracking = fullTracking;
+        this.extentX = extentX;
+        this.extentZ = extentZ;
+    }
+
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public TrackingState getTrackingState() {
+        return trackingState;
+    }
+
+    @Override
+    public boolean isFullTracking() {
+        return fullTracking;
+    }
+
+    @Override
+    public float getExtentX() {
+        return extentX;
+    }
+
+    @Override
+    public float getExtentZ() {
+        return extentZ;
+    }
+}
@@ -0,0 +1,24 @@
+package com.cw.artest.tracking;
+
+/**
+ * What {@link TrackingEngine} needs to know about a tracked image, e.g. an ARCore AugmentedImage or a
+ * frame of a recorded trace.
+ */
+public interface Trackable {
+
+    /**
+     * Index of the image in its database. Per-image state is addressed by it.
+     */
+    int getIndex();
+
+    TrackingState getTrackingState();
+
+    /**
+     * Whether the image is tracked from the camera image, as opposed to by its last known pose.
+     */
+    boolean isFullTracking();
+
+    float getExtentX();
+
+    float getExtentZ();
+}
@@ -0,0 +1,181 @@
+package com.cw.artest.tracking;
+
+/**
+ * The per-frame image lifecycle, without the platform: prepares content while an image is only
+ * detected, attaches it once the image is tracked, suspends it while the image is only tracked by its
+ * last known pose and releases it once the image stopped.
+ *
+ * <p>Call {@link #beginFrame}, then {@link #update} for every trackable updated in the frame, then
+ * {@link #endFrame}. Times are passed in, so frames can also be replayed faster than real time. Apart
+ * from state transitions, a frame does not allocate.
+ */
+public final class TrackingEngine<T extends Trackable, S extends ContentSlot> {
+
+    // How long an image has to be tracked by its last known pose before its content is suspended,
+    // and fully tracked again before it resumes. Longer for suspending, a brief drop is cheaper to
+    // keep rendering than a visible flicker.
+    public static final long DEFAULT_LOST_DELAY_MS = 500;
+    public static final long DEFAULT_REGAINED_DELAY_MS = 150;
+
+    // How long content prepared for a detected image is kept if tracking never starts.
+    public static final long DEFAULT_PREPARED_TTL_MS = 3000;
+
+    /**
+     * Creates the platform side of images.
+     */
+    public interface Binder<T extends Trackable, S extends ContentSlot> extends ContentPreparer.Factory<T> {
+        /**
+         * Creates the slot of a newly tracked image, before its content is attached.
+         */
+        S createSlot(T trackable);
+
+        /**
+         * Attaches prepared content to a newly tracked image, e.g. builds its nodes into the slot.
+         */
+        void attach(T trackable, Content content, S slot);
+    }
+
+    /**
+     * Notified of what happens on the frame path, e.g. to hide hints or count transitions. All
+     * methods are optional.
+     */
+    public interface Listener<T extends Trackable> {
+        /**
+         * An image changed state; the frame may allocate.
+         */
+        default void onTransition() {
+        }
+
+        /**
+         * Every tracked image, every frame.
+         */
+        default void onTracking(T trackable, long nowMs) {
+        }
+
+        /**
+         * Every fully tracked image that was attached before, every frame.
+         */
+        default void onFullyTracked(T trackable, long nowMs) {
+        }
+
+        default void onAttached(T trackable, long nowMs) {
+        }
+
+        /**
+         * The slot of a stopped image, already released.
+         */
+        default void onStopped(int index, ContentSlot slot) {
+        }
+    }
+
+    private final ImageStateTable<S> table;
+    private final ContentPreparer<T> preparer;
+    private final Binder<T, S> binder;
+    private Listener<T> listener = new Listener<T>() {
+    };
+
+    /**
+     * An engine with the delays the app runs with, so replays and benchmarks see the same lifecycle.
+     */
+    public TrackingEngine(Binder<T, S> binder) {
+        this(binder, DEFAULT_LOST_DELAY_MS, DEFAULT_REGAINED_DELAY_MS, DEFAULT_PREPARED_TTL_MS);
+    }
+
+    public TrackingEngine(Binder<T, S> binder, long lostDelayMs, long regainedDelayMs, long preparedTimeToLiveMs) {
+        this.binder = binder;
+        table = new ImageStateTable<>(lostDelayMs, regainedDelayMs);
+        preparer = new ContentPreparer<>(binder, preparedTimeToLiveMs);
+    }
+
+    public void setListener(Listener<T> listener) {
+        this.listener = listener;
+    }
+
+    public ImageStateTable<S> getTable() {
+        return table;
+    }
+
+    public ContentPreparer<T> getPreparer() {
+        return preparer;
+    }
+
+    public void beginFrame(long nowMs) {
+        preparer.expire(nowMs);
+    }
+
+    public void update(T trackable, long nowMs) {
+        int index = trackable.getIndex();
+        switch (trackable.getTrackingState()) {
+            case PAUSED:
+                // When an image is in PAUSED state, but the camera is not PAUSED, it has been detected,
+                // but not yet tracked. Start building its content so it is ready once tracking begins.
+                if (!table.isAttached(index)) {
+                    listener.onTransition();
+                    preparer.prepare(trackable, nowMs);
+                }
+                break;
+
+            case TRACKING:
+                listener.onTracking(trackable, nowMs);
+                if (!table.isAttached(index)) {
+                    listener.onTransition();
+                    attach(trackable, nowMs);
+                } else {
+                    boolean fullTracking = trackable.isFullTracking();
+                    table.setTrackingMethod(index, fullTracking, nowMs);
+                    table.setExtents(index, trackable.getExtentX(), trackable.getExtentZ());
+                    if (fullTracking) {
+                        listener.onFullyTracked(trackable, nowMs);
+                    }
+                }
+                break;
+
+            case STOPPED:
+                listener.onTransition();
+                preparer.cancel(index);
+                S slot = table.detach(index);
+                if (slot != null) {
+                    slot.release();
+                    listener.onStopped(index, slot);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Suspends the content of images that are only tracked by their last known pose, i.e. most likely
+     * out of view, and resumes it once they are fully tracked again. Runs for all attached images since
+     * images whose tracking method did not change may not be reported.
+     */
+    public void endFrame(long nowMs) {
+        for (int i = 0, capacity = table.getCapacity(); i < capacity; i++) {
+            if (table.updateTrackingQuality(i, nowMs)) {
+                listener.onTransition();
+                table.getSlot(i).setSuspended(ContentSlot.SUSPENDED_TRACKING, table.isTrackingLost(i));
+            }
+        }
+    }
+
+    /**
+     * Releases all prepared and attached content, e.g. when the database changed and indices mean
+     * other images.
+     */
+    public void releaseAll() {
+        preparer.cancelAll();
+        table.releaseAll();
+    }
+
+    private void attach(T trackable, long nowMs) {
+        int index = trackable.getIndex();
+        S slot = binder.createSlot(trackable);
+        table.attach(index, slot, nowMs);
+        table.setExtents(index, trackable.getExtentX(), trackable.getExtentZ());
+        Content content = preparer.take(trackable);
+        if (content == null) {
+            return;
+        }
+        slot.setContent(content);
+        binder.attach(trackable, content, slot);
+        listener.onAttached(trackable, nowMs);
+    }
+}
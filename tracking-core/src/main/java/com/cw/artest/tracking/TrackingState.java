@@ -0,0 +1,16 @@
+package com.cw.artest.tracking;
+
+/**
+ * Tracking state of a {@link Trackable}, mirroring {@code com.google.ar.core.TrackingState}.
+ */
+public enum TrackingState {
+    /**
+     * Detected but not tracked yet, or tracking is paused.
+     */
+    PAUSED,
+    TRACKING,
+    /**
+     * Will never be tracked again.
+     */
+    STOPPED
+}
@@ -0,0 +1,53 @@
+package com.cw.artest.tracking.trace;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stands in for the app's renderable loading when replaying a {@link Trace}: a load completes
+ * {@code loadDelayMs} of trace time after it started. Like the app's RenderableCache, a renderable is
+ * only loaded once and shared by all images asking for the same key, also while it is still loading.
+ */
+public final class MockRenderableLoader {
+
+    private final long loadDelayMs;
+    private final boolean cached;
+    // When the renderable of each key is ready.
+    private final Map<String, Long> readyAtMs = new HashMap<>();
+    private int loadCount;
+
+    /**
+     * @param cached whether loads are shared per key, or every call loads again, e.g. like a video
+     *               player that has to be prepared per image
+     */
+    public MockRenderableLoader(long loadDelayMs, boolean cached) {
+        this.loadDelayMs = loadDelayMs;
+        this.cached = cached;
+    }
+
+    /**
+     * Starts loading the renderable of {@code key} unless it is cached, and returns the trace time it
+     * is ready at.
+     */
+    public long load(String key, long nowMs) {
+        if (cached) {
+            Long ready = readyAtMs.get(key);
+            if (ready != null) {
+                return ready;
+            }
+        }
+        long ready = nowMs + loadDelayMs;
+        loadCount++;
+        if (cached) {
+            readyAtMs.put(key, ready);
+        }
+        return ready;
+    }
+
+    /**
+     * Number of loads started, i.e. cache misses.
+     */
+    public int getLoadCount() {
+        return loadCount;
+    }
+}
@@ -0,0 +1,123 @@
+package com.cw.artest.tracking.trace;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Result of replaying one {@link Trace}, see {@link TraceReplayer}.
+ */
+public final class ReplayReport {
+
+    private final int frameCount;
+    private final int updateCount;
+    private final long traceDurationMs;
+    private final long wallNanos;
+    // Sorted, from detecting an image to its content being attached with the renderable loaded.
+    private final long[] attachLatenciesMs;
+    private final int loadCount;
+    private final int expiredCount;
+    private final int peakAttachedImages;
+    private final int peakPreparedContents;
+    private final int peakLiveContents;
+    private final int peakLiveSlots;
+    private final int leakedContents;
+    private final int leakedSlots;
+
+    ReplayReport(int frameCount, int updateCount, long traceDurationMs, long wallNanos, long[] attachLatenciesMs,
+                 int loadCount, int expiredCount, int peakAttachedImages, int peakPreparedContents,
+                 int peakLiveContents, int peakLiveSlots, int leakedContents, int leakedSlots) {
+        this.frameCount = frameCount;
+        this.updateCount = updateCount;
+        this.traceDurationMs = traceDurationMs;
+        this.wallNanos = wallNanos;
+        this.attachLatenciesMs = attachLatenciesMs.clone();
+        Arrays.sort(this.attachLatenciesMs);
+        this.loadCount = loadCount;
+        this.expiredCount = expiredCount;
+        this.peakAttachedImages = peakAttachedImages;
+        this.peakPreparedContents = peakPreparedContents;
+        this.peakLiveContents = peakLiveContents;
+        this.peakLiveSlots = peakLiveSlots;
+        this.leakedContents = leakedContents;
+        this.leakedSlots = leakedSlots;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public double getFramesPerSecond() {
+        return wallNanos > 0 ? frameCount * 1e9 / wallNanos : 0;
+    }
+
+    public double getUpdatesPerSecond() {
+        return wallNanos > 0 ? updateCount * 1e9 / wallNanos : 0;
+    }
+
+    /**
+     * How many times faster than real time the trace was replayed.
+     */
+    public double getSpeedup() {
+        return wallNanos > 0 ? traceDurationMs * 1e6 / wallNanos : 0;
+    }
+
+    public int getAttachedContentCount() {
+        return attachLatenciesMs.length;
+    }
+
+    /**
+     * Latency to content-attached at {@code percentile} (0 to 100), -1 if no content was attached.
+     */
+    public long getAttachLatencyMs(double percentile) {
+        if (attachLatenciesMs.length == 0) {
+            return -1;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * attachLatenciesMs.length) - 1;
+        return attachLatenciesMs[Math.max(0, Math.min(rank, attachLatenciesMs.length - 1))];
+    }
+
+    public int getPeakAttachedImages() {
+        return peakAttachedImages;
+    }
+
+    public int getPeakPreparedContents() {
+        return peakPreparedContents;
+    }
+
+    public int getPeakLiveContents() {
+        return peakLiveContents;
+    }
+
+    public int getPeakLiveSlots() {
+        return peakLiveSlots;
+    }
+
+    /**
+     * Contents and slots still alive after everything was released at the end of the trace, should
+     * be 0.
+     */
+    public int getLeakedObjects() {
+        return leakedContents + leakedSlots;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%d frames, %d updates, %.1f s of trace in %.1f ms (%.0fx real time)\n"
+                        + "throughput: %.0f frames/s, %.0f updates/s\n"
+                        + "content attached: %d, latency p50 %d ms, p95 %d ms, max %d ms\n"
+                        + "renderable loads: %d, expired preparations: %d\n"
+                        + "peak live: %d attached images, %d prepared contents, %d contents, %d slots\n"
+                        + "leaked: %d contents, %d slots",
+                frameCount, updateCount, traceDurationMs / 1000.0, wallNanos / 1e6, getSpeedup(),
+                getFramesPerSecond(), getUpdatesPerSecond(),
+                getAttachedContentCount(), getAttachLatencyMs(50), getAttachLatencyMs(95), getAttachLatencyMs(100),
+                loadCount, expiredCount,
+                peakAttachedImages, peakPreparedContents, peakLiveContents, peakLiveSlots,
+                leakedContents, leakedSlots);
+    }
+}
@@ -0,0 +1,231 @@
+package com.cw.artest.tracking.trace;
+
+import com.cw.artest.tracking.TrackingState;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Trackable state updates recorded frame by frame, e.g. from ARCore by the app, to replay the image
+ * lifecycle without a camera, see {@link TraceReplayer}.
+ *
+ * <p>The format is text, one record per line:
+ *
+ * <pre>
+ * artrace 1
+ * f &lt;time ms&gt;
+ * u &lt;index&gt; &lt;P|T|S&gt; &lt;N|F|L&gt; &lt;tx&gt; &lt;ty&gt; &lt;tz&gt; &lt;qx&gt; &lt;qy&gt; &lt;qz&gt; &lt;qw&gt; &lt;extent x&gt; &lt;extent z&gt;
+ * r
+ * </pre>
+ *
+ * {@code f} starts a frame, {@code u} is a trackable reported in it with its tracking state (paused,
+ * tracking, stopped), tracking method (not tracking, full tracking, last known pose), center pose and
+ * extents in meters, {@code r} releases all images before the next frame, e.g. because the image
+ * database changed.
+ *
+ * <p>Updates are kept in flat arrays, so replaying does not allocate.
+ */
+public final class Trace {
+
+    static final String HEADER = "artrace 1";
+    static final char FRAME = 'f';
+    static final char UPDATE = 'u';
+    static final char RESET = 'r';
+
+    public static final int METHOD_NOT_TRACKING = 0;
+    public static final int METHOD_FULL_TRACKING = 1;
+    public static final int METHOD_LAST_KNOWN_POSE = 2;
+    static final String METHOD_CODES = "NFL";
+
+    // Translation x, y, z and rotation quaternion x, y, z, w.
+    public static final int POSE_SIZE = 7;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int frameCount;
+    private long[] frameTimesMs = new long[INITIAL_CAPACITY];
+    // Index of the first update of each frame; the frame after the last one starts at updateCount.
+    private int[] frameStarts = new int[INITIAL_CAPACITY];
+    private boolean[] frameResets = new boolean[INITIAL_CAPACITY];
+    private boolean resetPending;
+
+    private int updateCount;
+    private int[] indices = new int[INITIAL_CAPACITY];
+    private TrackingState[] states = new TrackingState[INITIAL_CAPACITY];
+    private byte[] methods = new byte[INITIAL_CAPACITY];
+    private float[] poses = new float[INITIAL_CAPACITY * POSE_SIZE];
+    private float[] extents = new float[INITIAL_CAPACITY * 2];
+
+    private Trace() {
+    }
+
+    /**
+     * Reads a trace written by {@link TraceWriter}.
+     */
+    public static Trace read(Reader in) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        String header = reader.readLine();
+        if (!HEADER.equals(header)) {
+            throw new IOException("Not a trace: " + header);
+        }
+        Trace trace = new Trace();
+        String line;
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                trace.parse(line);
+            } catch (RuntimeException e) {
+                throw new IOException("Line " + lineNumber + ": " + line, e);
+            }
+        }
+        return trace;
+    }
+
+    private void parse(String line) {
+        String[] fields = line.split(" ");
+        switch (line.charAt(0)) {
+            case FRAME:
+                addFrame(Long.parseLong(fields[1]));
+                break;
+            case UPDATE:
+                if (frameCount == 0) {
+                    throw new IllegalStateException("Update before the first frame");
+                }
+                if (fields.length != 6 + POSE_SIZE) {
+                    throw new IllegalArgumentException("Expected " + (6 + POSE_SIZE) + " fields");
+                }
+                ensureUpdateCapacity();
+                indices[updateCount] = Integer.parseInt(fields[1]);
+                states[updateCount] = parseState(fields[2]);
+                int method = METHOD_CODES.indexOf(fields[3].charAt(0));
+                if (method < 0 || fields[3].length() != 1) {
+                    throw new IllegalArgumentException("Unknown tracking method " + fields[3]);
+                }
+                methods[updateCount] = (byte) method;
+                for (int i = 0; i < POSE_SIZE; i++) {
+                    poses[updateCount * POSE_SIZE + i] = Float.parseFloat(fields[4 + i]);
+                }
+                extents[updateCount * 2] = Float.parseFloat(fields[4 + POSE_SIZE]);
+                extents[updateCount * 2 + 1] = Float.parseFloat(fields[5 + POSE_SIZE]);
+                updateCount++;
+                break;
+            case RESET:
+                resetPending = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown record");
+        }
+    }
+
+    private void addFrame(long timeMs) {
+        if (frameCount == frameTimesMs.length) {
+            int capacity = frameCount * 2;
+            frameTimesMs = Arrays.copyOf(frameTimesMs, capacity);
+            frameStarts = Arrays.copyOf(frameStarts, capacity);
+            frameResets = Arrays.copyOf(frameResets, capacity);
+        }
+        frameTimesMs[frameCount] = timeMs;
+        frameStarts[frameCount] = updateCount;
+        frameResets[frameCount] = resetPending;
+        resetPending = false;
+        frameCount++;
+    }
+
+    private void ensureUpdateCapacity() {
+        if (updateCount < indices.length) {
+            return;
+        }
+        int capacity = updateCount * 2;
+        indices = Arrays.copyOf(indices, capacity);
+        states = Arrays.copyOf(states, capacity);
+        methods = Arrays.copyOf(methods, capacity);
+        poses = Arrays.copyOf(poses, capacity * POSE_SIZE);
+        extents = Arrays.copyOf(extents, capacity * 2);
+    }
+
+    static char stateCode(TrackingState state) {
+        return state.name().charAt(0);
+    }
+
+    private static TrackingState parseState(String code) {
+        for (TrackingState state : TrackingState.values()) {
+            if (code.length() == 1 && stateCode(state) == code.charAt(0)) {
+                return state;
+            }
+        }
+        throw new IllegalArgumentException("Unknown tracking state " + code);
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getFrameTimeMs(int frame) {
+        return frameTimesMs[frame];
+    }
+
+    /**
+     * Whether all images were released at the start of {@code frame}, before its updates.
+     */
+    public boolean isReset(int frame) {
+        return frameResets[frame];
+    }
+
+    /**
+     * Index of the first update of {@code frame}.
+     */
+    public int getFrameStart(int frame) {
+        return frameStarts[frame];
+    }
+
+    /**
+     * Index after the last update of {@code frame}.
+     */
+    public int getFrameEnd(int frame) {
+        return frame + 1 < frameCount ? frameStarts[frame + 1] : updateCount;
+    }
+
+    /**
+     * Time from the first to the last frame.
+     */
+    public long getDurationMs() {
+        return frameCount > 0 ? frameTimesMs[frameCount - 1] - frameTimesMs[0] : 0;
+    }
+
+    public int getUpdateCount() {
+        return updateCount;
+    }
+
+    public int getIndex(int update) {
+        return indices[update];
+    }
+
+    public TrackingState getState(int update) {
+        return states[update];
+    }
+
+    public int getTrackingMethod(int update) {
+        return methods[update];
+    }
+
+    /**
+     * Copies the center pose of an update, see {@link #POSE_SIZE}.
+     */
+    public void getPose(int update, float[] dest, int offset) {
+        System.arraycopy(poses, update * POSE_SIZE, dest, offset, POSE_SIZE);
+    }
+
+    public float getExtentX(int update) {
+        return extents[update * 2];
+    }
+
+    public float getExtentZ(int update) {
+        return extents[update * 2 + 1];
+    }
+}
@@ -0,0 +1,75 @@
+package com.cw.artest.tracking.trace;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays traces recorded by the app and prints a {@link ReplayReport} for each, e.g.
+ * {@code ./gradlew :tracking-core:replay -Ptraces=trace-1.txt,trace-2.txt}.
+ *
+ * <pre>
+ * TraceReplayMain [--load-delay-ms N] [--uncached] [--runs N] trace...
+ * </pre>
+ *
+ * Each trace is replayed {@code --runs} times so the JIT warms up, the fastest run is reported.
+ */
+public final class TraceReplayMain {
+
+    private static final long DEFAULT_LOAD_DELAY_MS = 200;
+    private static final int DEFAULT_RUNS = 5;
+
+    private TraceReplayMain() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        long loadDelayMs = DEFAULT_LOAD_DELAY_MS;
+        boolean cached = true;
+        int runs = DEFAULT_RUNS;
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--load-delay-ms":
+                    loadDelayMs = Long.parseLong(args[++i]);
+                    break;
+                case "--uncached":
+                    cached = false;
+                    break;
+                case "--runs":
+                    runs = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                default:
+                    paths.add(args[i]);
+                    break;
+            }
+        }
+        if (paths.isEmpty()) {
+            System.err.println("Usage: TraceReplayMain [--load-delay-ms N] [--uncached] [--runs N] trace...");
+            System.exit(2);
+        }
+
+        TraceReplayer replayer = new TraceReplayer(loadDelayMs, cached);
+        System.out.println("renderable load delay " + loadDelayMs + " ms, "
+                + (cached ? "shared renderables" : "one renderable per image") + ", best of " + runs + " runs");
+        for (String path : paths) {
+            Trace trace;
+            try (Reader in = new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8)) {
+                trace = Trace.read(in);
+            }
+            ReplayReport best = null;
+            for (int run = 0; run < runs; run++) {
+                ReplayReport report = replayer.replay(trace);
+                if (best == null || report.getWallNanos() < best.getWallNanos()) {
+                    best = report;
+                }
+            }
+            System.out.println();
+            System.out.println(path);
+            System.out.println(best);
+        }
+    }
+}
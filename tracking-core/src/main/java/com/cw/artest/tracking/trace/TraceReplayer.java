@@ -0,0 +1,217 @@
+package com.cw.artest.tracking.trace;
+
+import com.cw.artest.tracking.Content;
+import com.cw.artest.tracking.ContentSlot;
+import com.cw.artest.tracking.MutableTrackable;
+import com.cw.artest.tracking.TrackingEngine;
+import com.cw.artest.tracking.TrackingState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays a {@link Trace} through the same {@link TrackingEngine} lifecycle, with the same default
+ * delays, AugmentedImageActivity runs, as fast as possible instead of in real time. Content is
+ * mocked: it is ready once its renderable is loaded by a {@link MockRenderableLoader}, in trace time.
+ *
+ * <p>Latency to content-attached is measured from the frame an image is first reported, PAUSED or
+ * TRACKING, to the frame its content is attached with the renderable loaded, i.e. when the app would
+ * show it.
+ */
+public final class TraceReplayer {
+
+    // Every image shows the content picked in the menu, so all of them share one renderable.
+    private static final String RENDERABLE_KEY = "content";
+
+    private final long loadDelayMs;
+    private final boolean cachedRenderables;
+
+    /**
+     * @param cachedRenderables whether images share one renderable, like models and GIFs, or each
+     *                          loads its own, like videos
+     */
+    public TraceReplayer(long loadDelayMs, boolean cachedRenderables) {
+        this.loadDelayMs = loadDelayMs;
+        this.cachedRenderables = cachedRenderables;
+    }
+
+    public ReplayReport replay(Trace trace) {
+        return new Run(trace).execute();
+    }
+
+    /**
+     * State of one replay, so a replayer can be reused.
+     */
+    private final class Run implements TrackingEngine.Binder<MutableTrackable, ContentSlot>,
+            TrackingEngine.Listener<MutableTrackable> {
+
+        private final Trace trace;
+        private final TrackingEngine<MutableTrackable, ContentSlot> engine;
+        private final MockRenderableLoader loader = new MockRenderableLoader(loadDelayMs, cachedRenderables);
+        private MutableTrackable[] trackables = new MutableTrackable[16];
+        // When each image was first reported, -1 while it is not.
+        private long[] detectedAtMs = new long[16];
+        // Attached content whose renderable is still loading.
+        private final List<MockContent> loading = new ArrayList<>();
+        private long[] attachLatenciesMs = new long[16];
+        private int attachedContentCount;
+        private long nowMs;
+
+        private int liveContents;
+        private int liveSlots;
+        private int peakAttachedImages;
+        private int peakPreparedContents;
+        private int peakLiveContents;
+        private int peakLiveSlots;
+
+        Run(Trace trace) {
+            this.trace = trace;
+            engine = new TrackingEngine<>(this);
+            engine.setListener(this);
+            Arrays.fill(detectedAtMs, -1);
+        }
+
+        ReplayReport execute() {
+            long startNs = System.nanoTime();
+            for (int frame = 0, frameCount = trace.getFrameCount(); frame < frameCount; frame++) {
+                replayFrame(frame);
+            }
+            long wallNanos = System.nanoTime() - startNs;
+            int expiredCount = engine.getPreparer().getExpiredCount();
+            engine.releaseAll();
+            return new ReplayReport(trace.getFrameCount(), trace.getUpdateCount(), trace.getDurationMs(), wallNanos,
+                    Arrays.copyOf(attachLatenciesMs, attachedContentCount), loader.getLoadCount(), expiredCount,
+                    peakAttachedImages, peakPreparedContents, peakLiveContents, peakLiveSlots,
+                    liveContents, liveSlots);
+        }
+
+        private void replayFrame(int frame) {
+            nowMs = trace.getFrameTimeMs(frame);
+            if (trace.isReset(frame)) {
+                engine.releaseAll();
+                Arrays.fill(detectedAtMs, -1);
+            }
+            engine.beginFrame(nowMs);
+            for (int u = trace.getFrameStart(frame), end = trace.getFrameEnd(frame); u < end; u++) {
+                int index = trace.getIndex(u);
+                TrackingState state = trace.getState(u);
+                MutableTrackable trackable = trackable(index);
+                trackable.set(state, trace.getTrackingMethod(u) == Trace.METHOD_FULL_TRACKING,
+                        trace.getExtentX(u), trace.getExtentZ(u));
+                if (state == TrackingState.STOPPED) {
+                    detectedAtMs[index] = -1;
+                } else if (detectedAtMs[index] < 0) {
+                    detectedAtMs[index] = nowMs;
+                }
+                engine.update(trackable, nowMs);
+            }
+            engine.endFrame(nowMs);
+            finishLoading();
+
+            peakAttachedImages = Math.max(peakAttachedImages, engine.getTable().getAttachedCount());
+            peakPreparedContents = Math.max(peakPreparedContents, engine.getPreparer().getPreparedCount());
+            peakLiveContents = Math.max(peakLiveContents, liveContents);
+            peakLiveSlots = Math.max(peakLiveSlots, liveSlots);
+        }
+
+        /**
+         * Shows attached content whose renderable finished loading, like the renderable futures
+         * completing on the main thread in the app.
+         */
+        private void finishLoading() {
+            for (int i = loading.size() - 1; i >= 0; i--) {
+                MockContent content = loading.get(i);
+                if (content.released) {
+                    loading.remove(i);
+                } else if (content.readyAtMs <= nowMs) {
+                    loading.remove(i);
+                    onContentShown(content);
+                }
+            }
+        }
+
+        private void onContentShown(MockContent content) {
+            long detectedMs = detectedAtMs[content.index];
+            if (detectedMs < 0) {
+                return;
+            }
+            if (attachedContentCount == attachLatenciesMs.length) {
+                attachLatenciesMs = Arrays.copyOf(attachLatenciesMs, attachedContentCount * 2);
+            }
+            attachLatenciesMs[attachedContentCount++] = nowMs - detectedMs;
+        }
+
+        private MutableTrackable trackable(int index) {
+            if (index >= trackables.length) {
+                int capacity = Math.max(index + 1, trackables.length * 2);
+                trackables = Arrays.copyOf(trackables, capacity);
+                int oldLength = detectedAtMs.length;
+                detectedAtMs = Arrays.copyOf(detectedAtMs, capacity);
+                Arrays.fill(detectedAtMs, oldLength, capacity, -1);
+            }
+            MutableTrackable trackable = trackables[index];
+            if (trackable == null) {
+                trackable = new MutableTrackable(index);
+                trackables[index] = trackable;
+            }
+            return trackable;
+        }
+
+        @Override
+        public Content prepare(MutableTrackable trackable) {
+            return new MockContent(this, trackable.getIndex(), loader.load(RENDERABLE_KEY, nowMs));
+        }
+
+        @Override
+        public ContentSlot createSlot(MutableTrackable trackable) {
+            liveSlots++;
+            return new ContentSlot() {
+                @Override
+                protected void onRelease() {
+                    liveSlots--;
+                }
+            };
+        }
+
+        @Override
+        public void attach(MutableTrackable trackable, Content content, ContentSlot slot) {
+            MockContent mockContent = (MockContent) content;
+            if (mockContent.readyAtMs <= nowMs) {
+                onContentShown(mockContent);
+            } else {
+                loading.add(mockContent);
+            }
+        }
+    }
+
+    private static final class MockContent implements Content {
+        private final Run run;
+        final int index;
+        final long readyAtMs;
+        boolean released;
+
+        MockContent(Run run, int index, long readyAtMs) {
+            this.run = run;
+            this.index = index;
+            this.readyAtMs = readyAtMs;
+            run.liveContents++;
+        }
+
+        @Override
+        public void setActive(boolean active) {
+        }
+
+        @Override
+        public void setDetailLevel(int level) {
+        }
+
+        @Override
+        public void release() {
+            if (!released) {
+                released = true;
+                run.liveContents--;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.cw.artest.tracking.trace;
+
+import com.cw.artest.tracking.TrackingState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a {@link Trace}, one frame at a time, in the text format described there.
+ *
+ * <p>Not thread safe. Buffer the writer, lines are written as they are recorded.
+ */
+public final class TraceWriter implements Closeable {
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder(128);
+    private int frameCount;
+
+    public TraceWriter(Writer out) throws IOException {
+        this.out = out;
+        out.write(Trace.HEADER);
+        out.write('\n');
+    }
+
+    /**
+     * Starts a frame. Every frame is written, also those without updates, since the tracking quality
+     * of attached images is filtered by time.
+     */
+    public void beginFrame(long timeMs) throws IOException {
+        line.setLength(0);
+        line.append(Trace.FRAME).append(' ').append(timeMs).append('\n');
+        flushLine();
+        frameCount++;
+    }
+
+    /**
+     * Writes one trackable reported in the current frame.
+     *
+     * @param method one of {@link Trace#METHOD_NOT_TRACKING}, {@link Trace#METHOD_FULL_TRACKING} and
+     *               {@link Trace#METHOD_LAST_KNOWN_POSE}
+     * @param pose   translation x, y, z followed by rotation quaternion x, y, z, w
+     */
+    public void update(int index, TrackingState state, int method, float[] pose, float extentX, float extentZ)
+            throws IOException {
+        line.setLength(0);
+        line.append(Trace.UPDATE).append(' ').append(index)
+                .append(' ').append(Trace.stateCode(state))
+                .append(' ').append(Trace.METHOD_CODES.charAt(method));
+        for (int i = 0; i < Trace.POSE_SIZE; i++) {
+            line.append(' ').append(pose[i]);
+        }
+        line.append(' ').append(extentX).append(' ').append(extentZ).append('\n');
+        flushLine();
+    }
+
+    /**
+     * Records that all images were released after the current frame, e.g. because the image database
+     * changed and indices now mean other images.
+     */
+    public void reset() throws IOException {
+        out.write(Trace.RESET);
+        out.write('\n');
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void flushLine() throws IOException {
+        // Writer.append(CharSequence) would copy the builder into a String.
+        for (int i = 0, length = line.length(); i < length; i++) {
+            out.write(line.charAt(i));
+        }
+    }
+}
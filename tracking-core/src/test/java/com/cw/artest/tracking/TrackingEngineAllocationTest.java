@@ -0,0 +1,120 @@
+package com.cw.artest.tracking;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Steady-state frames, i.e. frames in which no image changes state, must not allocate. On the device
+ * FrameAllocationProbe watches the whole frame callback in debug builds, this covers the engine part
+ * of it on every build.
+ */
+public class TrackingEngineAllocationTest {
+
+    private static final int IMAGES = 100;
+    private static final long FRAME_MS = 33;
+    // Enough frames for the JIT to compile the frame path, so escape analysis does not skew the count.
+    private static final int WARM_UP_FRAMES = 20_000;
+    private static final int MEASURED_FRAMES = 1_000;
+
+    private com.sun.management.ThreadMXBean threads;
+    private TrackingEngine<MutableTrackable, ContentSlot> engine;
+    private MutableTrackable[] trackables;
+    private long nowMs;
+
+    @Before
+    public void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        engine = new TrackingEngine<>(new TrackingEngine.Binder<MutableTrackable, ContentSlot>() {
+            @Override
+            public Content prepare(MutableTrackable trackable) {
+                return new NoopContent();
+            }
+
+            @Override
+            public ContentSlot createSlot(MutableTrackable trackable) {
+                return new ContentSlot();
+            }
+
+            @Override
+            public void attach(MutableTrackable trackable, Content content, ContentSlot slot) {
+            }
+        });
+        trackables = new MutableTrackable[IMAGES];
+        for (int i = 0; i < IMAGES; i++) {
+            trackables[i] = new MutableTrackable(i);
+            trackables[i].set(TrackingState.PAUSED, false, 0.2f, 0.3f);
+        }
+        runFrame();
+        for (MutableTrackable trackable : trackables) {
+            trackable.set(TrackingState.TRACKING, true, 0.2f, 0.3f);
+        }
+        runFrame();
+        assertEquals(IMAGES, engine.getTable().getAttachedCount());
+    }
+
+    @Test
+    public void steadyFramesDoNotAllocate() {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            runFrame();
+        }
+        assertEquals(0, allocatedBytes(MEASURED_FRAMES));
+    }
+
+    @Test
+    public void framesWithLastKnownPoseDoNotAllocate() {
+        // Images tracked by their last known pose are suspended once, after that the frames are steady.
+        for (MutableTrackable trackable : trackables) {
+            trackable.set(TrackingState.TRACKING, false, 0.2f, 0.3f);
+        }
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            runFrame();
+        }
+        assertEquals(0, allocatedBytes(MEASURED_FRAMES));
+    }
+
+    /**
+     * Bytes allocated by {@code frames} frames, minus what reading the counter allocates.
+     */
+    private long allocatedBytes(int frames) {
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long overhead = threads.getThreadAllocatedBytes(threadId) - before;
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < frames; i++) {
+            runFrame();
+        }
+        return threads.getThreadAllocatedBytes(threadId) - start - overhead;
+    }
+
+    private void runFrame() {
+        nowMs += FRAME_MS;
+        engine.beginFrame(nowMs);
+        for (MutableTrackable trackable : trackables) {
+            engine.update(trackable, nowMs);
+        }
+        engine.endFrame(nowMs);
+    }
+
+    private static final class NoopContent implements Content {
+        @Override
+        public void setActive(boolean active) {
+        }
+
+        @Override
+        public void setDetailLevel(int level) {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.cw.artest.video.cache;
+
+/**
+ * Where the video cache logs to. Nothing is logged until a {@link Sink} is set, the app sets one
+ * writing to logcat, so the cache runs on a plain JVM as well.
+ */
+public final class CacheLog {
+
+    // Same values as the android.util.Log priorities.
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int WARN = 5;
+
+    public interface Sink {
+        /**
+         * @param throwable null if the message has none
+         */
+        void log(int priority, String tag, String message, Throwable throwable);
+    }
+
+    private static volatile Sink sink;
+
+    private CacheLog() {
+    }
+
+    public static void setSink(Sink sink) {
+        CacheLog.sink = sink;
+    }
+
+    static void v(String tag, String message) {
+        log(VERBOSE, tag, message, null);
+    }
+
+    static void d(String tag, String message) {
+        log(DEBUG, tag, message, null);
+    }
+
+    static void w(String tag, String message, Throwable throwable) {
+        log(WARN, tag, message, throwable);
+    }
+
+    private static void log(int priority, String tag, String message, Throwable throwable) {
+        Sink current = sink;
+        if (current != null) {
+            current.log(priority, tag, message, throwable);
+        }
+    }
+}
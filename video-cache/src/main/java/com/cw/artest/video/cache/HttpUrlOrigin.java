@@ -0,0 +1,103 @@
+package com.cw.artest.video.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Fetches video bytes with {@link HttpURLConnection} range requests.
+ */
+public class HttpUrlOrigin implements VideoOrigin {
+
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 15_000;
+
+    @Override
+    public Connection open(String url, long start, long end) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        if (start > 0 || end >= 0) {
+            connection.setRequestProperty("Range", VideoOrigin.range(start, end));
+        }
+        int code = connection.getResponseCode();
+        if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_PARTIAL) {
+            connection.disconnect();
+            throw new IOException("HTTP " + code + " for " + url);
+        }
+        InputStream body = connection.getInputStream();
+        long totalLength;
+        if (code == HttpURLConnection.HTTP_PARTIAL) {
+            totalLength = parseTotalLength(connection.getHeaderField("Content-Range"));
+        } else {
+            totalLength = connection.getContentLengthLong();
+            // The server ignored the range, skip to the start.
+            long skipped = 0;
+            while (skipped < start) {
+                long n = body.skip(start - skipped);
+                if (n <= 0) {
+                    connection.disconnect();
+                    throw new IOException("Cannot skip to " + start + " of " + url);
+                }
+                skipped += n;
+            }
+        }
+        return new UrlConnection(connection, body, totalLength);
+    }
+
+    /**
+     * Parses the total of {@code bytes 0-99/1000}, -1 if it is unknown.
+     */
+    static long parseTotalLength(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0 || contentRange.endsWith("*")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final class UrlConnection implements Connection {
+        private final HttpURLConnection connection;
+        private final InputStream body;
+        private final long totalLength;
+
+        UrlConnection(HttpURLConnection connection, InputStream body, long totalLength) {
+            this.connection = connection;
+            this.body = body;
+            this.totalLength = totalLength;
+        }
+
+        @Override
+        public long getTotalLength() {
+            return totalLength;
+        }
+
+        @Override
+        public String getContentType() {
+            return connection.getContentType();
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                body.close();
+            } catch (IOException e) {
+                // Disconnected anyway.
+            }
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package com.cw.artest.video.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Disk cache of byte ranges of remote videos.
+ *
+ * <p>Each video is stored as non-overlapping spans, one file per span named by its start offset, so a
+ * player seeking around only caches what it actually played. Spans are evicted least-recently-used
+ * first once all spans together take more than the byte budget.
+ *
+ * <p>Only one fetch per byte range is in flight: {@link #startSpan} refuses to start a span that an
+ * unfinished one will reach soon, and readers follow that one with {@link SpanWriter#awaitEnd}
+ * instead. Spans are clipped on commit, so they never overlap.
+ *
+ * <p>Thread safe. Free of Android, logging goes through {@link CacheLog}, so it is tested on a plain
+ * JVM against a local HTTP server standing in for the CDN.
+ */
+public final class VideoCache {
+
+    private static final String TAG = "VideoCache";
+
+    private static final String SPAN_SUFFIX = ".span";
+    private static final String META_FILE = "meta";
+
+    // A reader this close ahead of an unfinished span waits for it instead of fetching on its own.
+    private static final long READ_BEHIND_GAP_BYTES = 512 * 1024;
+
+    private final File dir;
+    private long budgetBytes;
+    private long usedBytes;
+    private final Map<String, Video> videos = new HashMap<>();
+    // Spans being fetched, by key and start.
+    private final Map<String, TreeMap<Long, SpanWriter>> writers = new HashMap<>();
+
+    private long hitBytes;
+    private long missBytes;
+    private int evictionCount;
+
+    static final class Span {
+        final String key;
+        final long start;
+        final File file;
+        final long length;
+        long lastAccessMs;
+
+        Span(String key, long start, File file, long length, long lastAccessMs) {
+            this.key = key;
+            this.start = start;
+            this.file = file;
+            this.length = length;
+            this.lastAccessMs = lastAccessMs;
+        }
+
+        long end() {
+            return start + length;
+        }
+    }
+
+    private static final class Video {
+        final TreeMap<Long, Span> spans = new TreeMap<>();
+        long totalLength = -1;
+        String contentType;
+        long bytesPerSecond;
+    }
+
+    public VideoCache(File dir, long budgetBytes) {
+        this.dir = dir;
+        this.budgetBytes = budgetBytes;
+        load();
+    }
+
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        trimToBudget();
+    }
+
+    /**
+     * Returns the cache key of a URL.
+     */
+    public static String keyOf(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest(url.getBytes())) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the span containing {@code position}, or null if that byte is not cached.
+     */
+    synchronized Span findSpan(String key, long position) {
+        Video video = videos.get(key);
+        if (video == null) {
+            return null;
+        }
+        Map.Entry<Long, Span> floor = video.spans.floorEntry(position);
+        if (floor == null || floor.getValue().end() <= position) {
+            return null;
+        }
+        Span span = floor.getValue();
+        span.lastAccessMs = System.currentTimeMillis();
+        return span;
+    }
+
+    /**
+     * Start of the first span after {@code position}, or -1 if there is none. Bytes fetched from
+     * {@code position} on only need to be cached up to there.
+     */
+    synchronized long nextSpanStart(String key, long position) {
+        Video video = videos.get(key);
+        if (video == null) {
+            return -1;
+        }
+        Long next = video.spans.higherKey(position);
+        return next != null ? next : -1;
+    }
+
+    /**
+     * Number of bytes cached without a gap from {@code position} on.
+     */
+    public synchronized long getCachedBytesFrom(String key, long position) {
+        Video video = videos.get(key);
+        if (video == null) {
+            return 0;
+        }
+        long end = position;
+        Map.Entry<Long, Span> entry = video.spans.floorEntry(position);
+        while (entry != null && entry.getValue().start <= end && entry.getValue().end() > end) {
+            end = entry.getValue().end();
+            entry = video.spans.ceilingEntry(end);
+        }
+        return end - position;
+    }
+
+    synchronized long getTotalLength(String key) {
+        Video video = videos.get(key);
+        return video != null ? video.totalLength : -1;
+    }
+
+    synchronized String getContentType(String key) {
+        Video video = videos.get(key);
+        return video != null ? video.contentType : null;
+    }
+
+    synchronized long getBytesPerSecond(String key) {
+        Video video = videos.get(key);
+        return video != null ? video.bytesPerSecond : 0;
+    }
+
+    synchronized void setInfo(String key, long totalLength, String contentType) {
+        Video video = video(key);
+        video.totalLength = totalLength;
+        video.contentType = contentType;
+        writeMeta(key, video);
+    }
+
+    /**
+     * Records the average bitrate of a video once a player knows its duration, used to turn prefetched
+     * seconds into bytes.
+     */
+    public synchronized void setDuration(String key, long durationMs) {
+        Video video = videos.get(key);
+        if (video == null || video.totalLength <= 0 || durationMs <= 0) {
+            return;
+        }
+        video.bytesPerSecond = video.totalLength * 1000 / durationMs;
+        writeMeta(key, video);
+    }
+
+    /**
+     * Starts writing a span at {@code start}, to be fetched up to {@code end} or to the end of the
+     * video if {@code end} is -1. Nothing is cached unless {@link SpanWriter#commit()} is called.
+     *
+     * <p>Returns null if the byte at {@code start} is cached or an unfinished span will reach it, see
+     * {@link #findWriter}. The writer stops early, see {@link SpanWriter#getLimit()}, where a span
+     * starts that is cached or being fetched.
+     */
+    synchronized SpanWriter startSpan(String key, long start, long end) throws IOException {
+        Video video = videos.get(key);
+        if (video != null && findSpanLocked(video, start) != null) {
+            return null;
+        }
+        TreeMap<Long, SpanWriter> active = writers.get(key);
+        if (active != null) {
+            if (findWriterLocked(active, start) != null) {
+                return null;
+            }
+            // An unfinished span further behind would run into this one, it stops here instead.
+            for (SpanWriter writer : active.headMap(start, false).values()) {
+                if (writer.limit < 0 || writer.limit > start) {
+                    writer.limit = start;
+                }
+            }
+        }
+        long limit = end;
+        long next = nextSpanStart(key, start);
+        if (next >= 0 && (limit < 0 || next < limit)) {
+            limit = next;
+        }
+        Long nextWriter = active != null ? active.higherKey(start) : null;
+        if (nextWriter != null && (limit < 0 || nextWriter < limit)) {
+            limit = nextWriter;
+        }
+
+        File videoDir = new File(dir, key);
+        if (!videoDir.exists() && !videoDir.mkdirs()) {
+            throw new IOException("Cannot create " + videoDir);
+        }
+        // A file per writer, a reader may still be following a finished one with the same start. The
+        // prefix needs at least three characters.
+        File tmp = File.createTempFile(start + SPAN_SUFFIX + ".", ".tmp", videoDir);
+        SpanWriter writer = new SpanWriter(key, start, limit, tmp);
+        if (active == null) {
+            active = new TreeMap<>();
+            writers.put(key, active);
+        }
+        active.put(start, writer);
+        return writer;
+    }
+
+    /**
+     * Returns the unfinished span that has written or will soon write the byte at {@code position},
+     * or null if there is none.
+     */
+    synchronized SpanWriter findWriter(String key, long position) {
+        TreeMap<Long, SpanWriter> active = writers.get(key);
+        return active != null ? findWriterLocked(active, position) : null;
+    }
+
+    private static SpanWriter findWriterLocked(TreeMap<Long, SpanWriter> active, long position) {
+        Map.Entry<Long, SpanWriter> floor = active.floorEntry(position);
+        if (floor == null) {
+            return null;
+        }
+        SpanWriter writer = floor.getValue();
+        long limit = writer.limit;
+        if ((limit >= 0 && position >= limit) || position > writer.getEnd() + READ_BEHIND_GAP_BYTES) {
+            return null;
+        }
+        return writer;
+    }
+
+    private void removeWriter(SpanWriter writer) {
+        TreeMap<Long, SpanWriter> active = writers.get(writer.key);
+        if (active != null && active.get(writer.start) == writer) {
+            active.remove(writer.start);
+            if (active.isEmpty()) {
+                writers.remove(writer.key);
+            }
+        }
+    }
+
+    synchronized void recordHit(long bytes) {
+        hitBytes += bytes;
+    }
+
+    synchronized void recordMiss(long bytes) {
+        missBytes += bytes;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getHitBytes() {
+        return hitBytes;
+    }
+
+    public synchronized long getMissBytes() {
+        return missBytes;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Writes one span. Written by the thread fetching the bytes, other threads may read what was
+     * written so far from {@link #getFile()}.
+     */
+    final class SpanWriter {
+        private final String key;
+        private final long start;
+        private final File tmp;
+        private final OutputStream out;
+        // Guarded by the writer.
+        private long length;
+        private boolean closed;
+        // Where the fetch should stop, -1 for the end of the video. Lowered under the cache lock
+        // when another span starts ahead.
+        private volatile long limit;
+
+        private SpanWriter(String key, long start, long limit, File tmp) throws IOException {
+            this.key = key;
+            this.start = start;
+            this.limit = limit;
+            this.tmp = tmp;
+            out = new FileOutputStream(tmp);
+        }
+
+        void write(byte[] buffer, int offset, int count) throws IOException {
+            out.write(buffer, offset, count);
+            synchronized (this) {
+                length += count;
+                notifyAll();
+            }
+        }
+
+        long getStart() {
+            return start;
+        }
+
+        synchronized long getEnd() {
+            return start + length;
+        }
+
+        long getLimit() {
+            return limit;
+        }
+
+        /**
+         * The bytes written so far, until the span is committed or aborted.
+         */
+        File getFile() {
+            return tmp;
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Waits until the byte at {@code position} is written or the span is closed, at most
+         * {@code timeoutMs}. Returns the end of what was written.
+         */
+        synchronized long awaitEnd(long position, long timeoutMs) throws InterruptedIOException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (!closed && start + length <= position) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            return start + length;
+        }
+
+        /**
+         * Adds the bytes written so far to the cache, up to the next cached span.
+         */
+        void commit() {
+            if (isClosed()) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                CacheLog.w(TAG, "Cannot write " + tmp, e);
+                discard();
+                return;
+            }
+            synchronized (VideoCache.this) {
+                removeWriter(this);
+                commitLocked();
+            }
+            close();
+        }
+
+        private void commitLocked() {
+            long committed;
+            synchronized (this) {
+                committed = length;
+            }
+            Video video = video(key);
+            // Another span may have been cached from before the start meanwhile, keep that one.
+            if (findSpanLocked(video, start) != null) {
+                tmp.delete();
+                return;
+            }
+            Long next = video.spans.higherKey(start);
+            if (next != null && next < start + committed) {
+                committed = next - start;
+                try (RandomAccessFile file = new RandomAccessFile(tmp, "rw")) {
+                    file.setLength(committed);
+                } catch (IOException e) {
+                    CacheLog.w(TAG, "Cannot clip " + tmp, e);
+                    tmp.delete();
+                    return;
+                }
+            }
+            File file = new File(tmp.getParentFile(), start + SPAN_SUFFIX);
+            if (committed == 0 || !tmp.renameTo(file)) {
+                tmp.delete();
+                return;
+            }
+            video.spans.put(start, new Span(key, start, file, committed, System.currentTimeMillis()));
+            usedBytes += committed;
+            trimToBudget();
+        }
+
+        void abort() {
+            if (isClosed()) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                // Deleted anyway.
+            }
+            discard();
+        }
+
+        private void discard() {
+            synchronized (VideoCache.this) {
+                removeWriter(this);
+            }
+            tmp.delete();
+            close();
+        }
+
+        private synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+    }
+
+    private Span findSpanLocked(Video video, long position) {
+        Map.Entry<Long, Span> floor = video.spans.floorEntry(position);
+        return floor != null && floor.getValue().end() > position ? floor.getValue() : null;
+    }
+
+    private Video video(String key) {
+        Video video = videos.get(key);
+        if (video == null) {
+            video = new Video();
+            videos.put(key, video);
+        }
+        return video;
+    }
+
+    private void trimToBudget() {
+        if (usedBytes <= budgetBytes) {
+            return;
+        }
+        List<Span> spans = new ArrayList<>();
+        for (Video video : videos.values()) {
+            spans.addAll(video.spans.values());
+        }
+        Collections.sort(spans, (a, b) -> Long.compare(a.lastAccessMs, b.lastAccessMs));
+        for (Span span : spans) {
+            if (usedBytes <= budgetBytes) {
+                break;
+            }
+            videos.get(span.key).spans.remove(span.start);
+            usedBytes -= span.length;
+            evictionCount++;
+            // A reader that already opened the file keeps reading it.
+            span.file.delete();
+        }
+    }
+
+    private void writeMeta(String key, Video video) {
+        File videoDir = new File(dir, key);
+        if (!videoDir.exists() && !videoDir.mkdirs()) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(videoDir, META_FILE)))) {
+            out.writeLong(video.totalLength);
+            out.writeUTF(video.contentType != null ? video.contentType : "");
+            out.writeLong(video.bytesPerSecond);
+        } catch (IOException e) {
+            CacheLog.w(TAG, "Cannot write meta of " + key, e);
+        }
+    }
+
+    private void load() {
+        File[] videoDirs = dir.listFiles();
+        if (videoDirs == null) {
+            return;
+        }
+        for (File videoDir : videoDirs) {
+            File[] files = videoDir.listFiles();
+            if (files == null) {
+                continue;
+            }
+            String key = videoDir.getName();
+            Video video = video(key);
+            for (File file : files) {
+                String name = file.getName();
+                if (META_FILE.equals(name)) {
+                    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                        video.totalLength = in.readLong();
+                        video.contentType = in.readUTF();
+                        video.bytesPerSecond = in.readLong();
+                    } catch (IOException e) {
+                        CacheLog.w(TAG, "Ignoring corrupt " + file, e);
+                    }
+                } else if (name.endsWith(SPAN_SUFFIX)) {
+                    try {
+                        long start = Long.parseLong(name.substring(0, name.length() - SPAN_SUFFIX.length()));
+                        video.spans.put(start, new Span(key, start, file, file.length(), file.lastModified()));
+                        usedBytes += file.length();
+                    } catch (NumberFormatException e) {
+                        file.delete();
+                    }
+                } else {
+                    // Left over from a crash while writing.
+                    file.delete();
+                }
+            }
+        }
+        trimToBudget();
+    }
+}
@@ -0,0 +1,418 @@
+package com.cw.artest.video.cache;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local HTTP server players are pointed at instead of the CDN, see {@link #getProxyUrl}. Range
+ * requests are answered from the {@link VideoCache} where it has the bytes and from the
+ * {@link VideoOrigin} otherwise, caching what is fetched on the way. {@link #prefetch} fetches the
+ * start of a video before anyone plays it, e.g. as soon as an image is detected.
+ */
+public class VideoCacheServer {
+
+    private static final String TAG = "VideoCacheServer";
+
+    // Used to turn prefetched seconds into bytes until a player reported the real bitrate.
+    private static final long DEFAULT_BYTES_PER_SECOND = 256 * 1024;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    // How long a reader waits for bytes of a span another connection is fetching.
+    private static final long READ_BEHIND_TIMEOUT_MS = 15_000;
+
+    private final VideoCache cache;
+    private final VideoOrigin origin;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "VideoCacheServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "VideoPrefetcher");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Set<String> prefetching = new HashSet<>();
+    private ServerSocket serverSocket;
+
+    public VideoCacheServer(VideoCache cache, VideoOrigin origin) {
+        this.cache = cache;
+        this.origin = origin;
+    }
+
+    public VideoCache getCache() {
+        return cache;
+    }
+
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        serverSocket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread(this::accept, "VideoCacheServer-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Closing anyway.
+        }
+        serverSocket = null;
+    }
+
+    /**
+     * Returns the URL to play {@code url} through the cache, or {@code url} itself if it is not a
+     * remote video or the server is not running.
+     */
+    public synchronized String getProxyUrl(String url) {
+        if (serverSocket == null || !url.startsWith("http")) {
+            return url;
+        }
+        try {
+            return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/"
+                    + URLEncoder.encode(url, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Whether the start of {@code url} is cached, i.e. whether playing it now starts warm.
+     */
+    public boolean isCached(String url) {
+        return cache.getCachedBytesFrom(VideoCache.keyOf(url), 0) > 0;
+    }
+
+    /**
+     * Fetches about the first {@code seconds} of {@code url} into the cache in the background, unless
+     * they are cached or being fetched already.
+     */
+    public void prefetch(String url, int seconds) {
+        if (!url.startsWith("http")) {
+            return;
+        }
+        String key = VideoCache.keyOf(url);
+        synchronized (prefetching) {
+            if (!prefetching.add(key)) {
+                return;
+            }
+        }
+        prefetcher.execute(() -> {
+            try {
+                long bytesPerSecond = cache.getBytesPerSecond(key);
+                long bytes = seconds * (bytesPerSecond > 0 ? bytesPerSecond : DEFAULT_BYTES_PER_SECOND);
+                long total = cache.getTotalLength(key);
+                long end = total > 0 ? Math.min(total, bytes) : bytes;
+                long cached = cache.getCachedBytesFrom(key, 0);
+                if (cached >= end) {
+                    return;
+                }
+                long start = System.currentTimeMillis();
+                copy(key, url, cached, end, null, null);
+                CacheLog.d(TAG, "Prefetched " + ((end - cached) >> 10) + " KB of " + url + " in "
+                        + (System.currentTimeMillis() - start) + " ms");
+            } catch (IOException e) {
+                CacheLog.w(TAG, "Cannot prefetch " + url, e);
+            } finally {
+                synchronized (prefetching) {
+                    prefetching.remove(key);
+                }
+            }
+        });
+    }
+
+    private void accept() {
+        while (true) {
+            ServerSocket server;
+            synchronized (this) {
+                server = serverSocket;
+            }
+            if (server == null) {
+                return;
+            }
+            try {
+                Socket socket = server.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    CacheLog.w(TAG, "Cannot accept connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket client = socket) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(), StandardCharsets.ISO_8859_1));
+            String requestLine = reader.readLine();
+            if (requestLine == null) {
+                return;
+            }
+            String[] parts = requestLine.split(" ");
+            long rangeStart = 0;
+            long rangeEnd = -1;
+            boolean ranged = false;
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                if (line.regionMatches(true, 0, "Range:", 0, 6)) {
+                    String range = line.substring(6).trim();
+                    if (range.startsWith("bytes=")) {
+                        String[] bounds = range.substring(6).split("-", -1);
+                        rangeStart = Long.parseLong(bounds[0].trim());
+                        if (bounds.length > 1 && !bounds[1].trim().isEmpty()) {
+                            rangeEnd = Long.parseLong(bounds[1].trim()) + 1;
+                        }
+                        ranged = true;
+                    }
+                }
+            }
+            if (parts.length < 2 || parts[1].length() < 2) {
+                writeStatus(client.getOutputStream(), "400 Bad Request");
+                return;
+            }
+            String url = URLDecoder.decode(parts[1].substring(1), "UTF-8");
+            boolean head = "HEAD".equals(parts[0]);
+            serveRange(client.getOutputStream(), url, rangeStart, rangeEnd, ranged, head);
+        } catch (IOException | NumberFormatException e) {
+            // Players drop connections all the time when seeking.
+            CacheLog.v(TAG, "Connection ended: " + e);
+        }
+    }
+
+    private void serveRange(OutputStream out, String url, long start, long end, boolean ranged, boolean head)
+            throws IOException {
+        String key = VideoCache.keyOf(url);
+        VideoOrigin.Connection first = null;
+        long total = cache.getTotalLength(key);
+        if (total < 0) {
+            // Learn the length from the request we need anyway, unless the start is cached.
+            first = origin.open(url, start, end);
+            total = first.getTotalLength();
+            cache.setInfo(key, total, first.getContentType());
+        }
+        try {
+            if (total >= 0 && start >= total) {
+                writeStatus(out, "416 Range Not Satisfiable");
+                return;
+            }
+            if (end < 0 || (total >= 0 && end > total)) {
+                end = total;
+            }
+            StringBuilder headers = new StringBuilder()
+                    .append(ranged ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n")
+                    .append("Accept-Ranges: bytes\r\n")
+                    .append("Connection: close\r\n");
+            String contentType = cache.getContentType(key);
+            if (contentType != null && !contentType.isEmpty()) {
+                headers.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            if (end >= 0) {
+                headers.append("Content-Length: ").append(end - start).append("\r\n");
+                if (ranged) {
+                    headers.append("Content-Range: bytes ").append(start).append('-').append(end - 1)
+                            .append('/').append(total).append("\r\n");
+                }
+            }
+            headers.append("\r\n");
+            out.write(headers.toString().getBytes(StandardCharsets.ISO_8859_1));
+            if (!head) {
+                copy(key, url, start, end, out, first);
+                first = null;
+            }
+            out.flush();
+        } finally {
+            if (first != null) {
+                first.close();
+            }
+        }
+    }
+
+    /**
+     * Copies bytes {@code start} to {@code end} of the video to {@code out}, from the cache where
+     * possible and from the origin otherwise, caching what is fetched. Bytes another connection is
+     * fetching are read behind it instead of fetched twice. {@code out} may be null to only fill the
+     * cache. Takes ownership of {@code first}, an origin connection opened at {@code start}.
+     */
+    private void copy(String key, String url, long start, long end, OutputStream out,
+                      VideoOrigin.Connection first) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = start;
+        try {
+            while (end < 0 || position < end) {
+                VideoCache.Span span = first == null ? cache.findSpan(key, position) : null;
+                if (span != null) {
+                    long until = end < 0 ? span.end() : Math.min(span.end(), end);
+                    if (!copySpan(span, position, until, out, buffer)) {
+                        // Evicted meanwhile, fetch it again.
+                        continue;
+                    }
+                    cache.recordHit(until - position);
+                    position = until;
+                    continue;
+                }
+                VideoCache.SpanWriter active = first == null ? cache.findWriter(key, position) : null;
+                if (active != null) {
+                    if (out == null) {
+                        // Prefetching, someone else is fetching these bytes already.
+                        return;
+                    }
+                    position = readBehind(key, active, position, end, out, buffer);
+                    continue;
+                }
+
+                long next = cache.nextSpanStart(key, position);
+                long fetchEnd = next < 0 ? end : (end < 0 ? next : Math.min(next, end));
+                VideoCache.SpanWriter writer = cache.startSpan(key, position, fetchEnd);
+                if (writer == null) {
+                    // Cached or started by another connection meanwhile, read that instead.
+                    if (first != null) {
+                        first.close();
+                        first = null;
+                    }
+                    continue;
+                }
+                VideoOrigin.Connection connection;
+                try {
+                    connection = first != null ? first : origin.open(url, position, writer.getLimit());
+                } catch (IOException e) {
+                    writer.abort();
+                    throw e;
+                }
+                first = null;
+                if (cache.getTotalLength(key) < 0) {
+                    cache.setInfo(key, connection.getTotalLength(), connection.getContentType());
+                }
+                boolean endOfVideo = false;
+                try (VideoOrigin.Connection c = connection) {
+                    InputStream body = c.getBody();
+                    long limit;
+                    // The limit drops when another connection starts fetching further ahead.
+                    while ((limit = writer.getLimit()) < 0 || writer.getEnd() < limit) {
+                        int max = limit < 0 ? buffer.length : (int) Math.min(buffer.length, limit - writer.getEnd());
+                        int read = body.read(buffer, 0, max);
+                        if (read < 0) {
+                            endOfVideo = true;
+                            break;
+                        }
+                        writer.write(buffer, 0, read);
+                        if (out != null) {
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                } finally {
+                    // Whatever was fetched is kept, also if the player went away.
+                    writer.commit();
+                    cache.recordMiss(writer.getEnd() - position);
+                }
+                if (endOfVideo || writer.getEnd() == position) {
+                    return;
+                }
+                position = writer.getEnd();
+            }
+        } finally {
+            if (first != null) {
+                first.close();
+            }
+        }
+    }
+
+    /**
+     * Copies what {@code writer} fetches from {@code position} on to {@code out}, until {@code end},
+     * until the writer finishes or until it stops producing. Returns the position reached.
+     */
+    private long readBehind(String key, VideoCache.SpanWriter writer, long position, long end, OutputStream out,
+                            byte[] buffer) throws IOException {
+        RandomAccessFile file;
+        try {
+            file = new RandomAccessFile(writer.getFile(), "r");
+        } catch (FileNotFoundException e) {
+            // Committed or aborted meanwhile.
+            return position;
+        }
+        try {
+            while (end < 0 || position < end) {
+                long available = writer.awaitEnd(position, READ_BEHIND_TIMEOUT_MS);
+                if (available <= position) {
+                    if (writer.isClosed()) {
+                        return position;
+                    }
+                    throw new IOException("Timed out waiting for " + key + " at " + position);
+                }
+                long until = end < 0 ? available : Math.min(available, end);
+                file.seek(position - writer.getStart());
+                while (position < until) {
+                    int read = file.read(buffer, 0, (int) Math.min(buffer.length, until - position));
+                    if (read < 0) {
+                        // Clipped on commit, the rest is in the next span.
+                        return position;
+                    }
+                    out.write(buffer, 0, read);
+                    cache.recordHit(read);
+                    position += read;
+                }
+            }
+            return position;
+        } finally {
+            file.close();
+        }
+    }
+
+    private static boolean copySpan(VideoCache.Span span, long position, long until, OutputStream out,
+                                    byte[] buffer) throws IOException {
+        if (out == null) {
+            return true;
+        }
+        RandomAccessFile file;
+        try {
+            file = new RandomAccessFile(span.file, "r");
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            file.seek(position - span.start);
+            long remaining = until - position;
+            while (remaining > 0) {
+                int read = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Span " + span.file + " is truncated");
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+            return true;
+        } finally {
+            file.close();
+        }
+    }
+
+    private static void writeStatus(OutputStream out, String status) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+}
@@ -0,0 +1,39 @@
+package com.cw.artest.video.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Where {@link VideoCacheServer} fetches bytes that are not cached, e.g. the CDN or a local server
+ * standing in for it.
+ */
+public interface VideoOrigin {
+
+    /**
+     * Opens bytes {@code start} to {@code end} (exclusive) of {@code url}, or to the end of the video
+     * if {@code end} is -1. Bounded requests are read to the end, so the connection can be reused.
+     */
+    Connection open(String url, long start, long end) throws IOException;
+
+    /**
+     * The Range header value for {@link #open}.
+     */
+    static String range(long start, long end) {
+        return "bytes=" + start + "-" + (end >= 0 ? String.valueOf(end - 1) : "");
+    }
+
+    interface Connection extends Closeable {
+        /**
+         * Length of the whole video, or -1 if unknown.
+         */
+        long getTotalLength();
+
+        String getContentType();
+
+        /**
+         * The bytes from the requested start on.
+         */
+        InputStream getBody();
+    }
+}
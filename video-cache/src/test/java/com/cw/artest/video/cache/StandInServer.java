@@ -0,0 +1,113 @@
+package com.cw.artest.video.cache;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local HTTP server standing in for the CDN, serving videos from memory with range requests.
+ */
+final class StandInServer implements Closeable {
+
+    private static final int CHUNK_BYTES = 16 * 1024;
+
+    final AtomicInteger requestCount = new AtomicInteger();
+
+    private final Map<String, byte[]> videos;
+    private final long latencyMs;
+    private final long bytesPerSecond;
+    private final ServerSocket serverSocket;
+
+    /**
+     * @param latencyMs      delay before each response
+     * @param bytesPerSecond throttle of the response bodies, 0 for none
+     */
+    StandInServer(Map<String, byte[]> videos, long latencyMs, long bytesPerSecond) throws IOException {
+        this.videos = videos;
+        this.latencyMs = latencyMs;
+        this.bytesPerSecond = bytesPerSecond;
+        serverSocket = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread(this::accept, "StandInServer-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread connection = new Thread(() -> serve(socket), "StandInServer");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                // Closed.
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket client = socket) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(), StandardCharsets.ISO_8859_1));
+            String[] requestLine = reader.readLine().split(" ");
+            String range = null;
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                if (line.regionMatches(true, 0, "Range:", 0, 6)) {
+                    range = line.substring(6).trim();
+                }
+            }
+            requestCount.incrementAndGet();
+            Thread.sleep(latencyMs);
+
+            OutputStream out = client.getOutputStream();
+            byte[] video = videos.get(requestLine[1]);
+            if (video == null) {
+                out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+                        .getBytes(StandardCharsets.ISO_8859_1));
+                return;
+            }
+            int start = 0;
+            int end = video.length;
+            if (range != null) {
+                String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                start = Integer.parseInt(bounds[0]);
+                if (!bounds[1].isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(bounds[1]) + 1);
+                }
+            }
+            String headers = (range != null ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n")
+                    + "Content-Type: video/mp4\r\n"
+                    + "Content-Length: " + (end - start) + "\r\n"
+                    + (range != null ? "Content-Range: bytes " + start + "-" + (end - 1) + "/" + video.length + "\r\n" : "")
+                    + "Connection: close\r\n\r\n";
+            out.write(headers.getBytes(StandardCharsets.ISO_8859_1));
+            for (int position = start; position < end; position += CHUNK_BYTES) {
+                out.write(video, position, Math.min(CHUNK_BYTES, end - position));
+                if (bytesPerSecond > 0) {
+                    Thread.sleep(CHUNK_BYTES * 1000L / bytesPerSecond);
+                }
+            }
+            out.flush();
+        } catch (IOException | InterruptedException e) {
+            // The client went away.
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
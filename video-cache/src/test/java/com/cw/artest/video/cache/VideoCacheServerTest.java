@@ -0,0 +1,206 @@
+package com.cw.artest.video.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plays videos through {@link VideoCacheServer} from a local HTTP server standing in for the CDN,
+ * cold and warm, and checks what is fetched, cached and evicted.
+ */
+public class VideoCacheServerTest {
+
+    private static final int VIDEO_BYTES = 1024 * 1024;
+    // Time to first byte of the stand-in, so a cold start is measurably slower than a warm one.
+    private static final long ORIGIN_LATENCY_MS = 100;
+    private static final long BUDGET_BYTES = 64L * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StandInServer origin;
+    private VideoCache cache;
+    private VideoCacheServer server;
+    private byte[] videoA;
+    private byte[] videoB;
+
+    @Before
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        videoA = new byte[VIDEO_BYTES];
+        random.nextBytes(videoA);
+        videoB = new byte[VIDEO_BYTES];
+        random.nextBytes(videoB);
+        Map<String, byte[]> videos = new HashMap<>();
+        videos.put("/a.mp4", videoA);
+        videos.put("/b.mp4", videoB);
+        origin = new StandInServer(videos, ORIGIN_LATENCY_MS, 0);
+        startServer(BUDGET_BYTES);
+    }
+
+    private void startServer(long budgetBytes) throws IOException {
+        cache = new VideoCache(folder.newFolder(), budgetBytes);
+        server = new VideoCacheServer(cache, new HttpUrlOrigin());
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (server != null) {
+            server.stop();
+        }
+        if (origin != null) {
+            origin.close();
+        }
+    }
+
+    @Test
+    public void warmPlayIsServedFromCache() throws IOException {
+        String url = origin.url("/a.mp4");
+
+        Response cold = get(server.getProxyUrl(url), null);
+        assertArrayEquals(videoA, cold.body);
+        awaitCached(url);
+        assertEquals(0, cache.getHitBytes());
+        assertEquals(VIDEO_BYTES, cache.getMissBytes());
+        assertTrue(server.isCached(url));
+        int coldRequests = origin.requestCount.get();
+
+        Response warm = get(server.getProxyUrl(url), null);
+        assertArrayEquals(videoA, warm.body);
+        await(() -> cache.getHitBytes() >= VIDEO_BYTES);
+        assertEquals(VIDEO_BYTES, cache.getHitBytes());
+        assertEquals(VIDEO_BYTES, cache.getMissBytes());
+        assertEquals(coldRequests, origin.requestCount.get());
+        assertTrue("cold " + cold.firstByteNanos + " ns, warm " + warm.firstByteNanos + " ns",
+                warm.firstByteNanos < cold.firstByteNanos);
+    }
+
+    @Test
+    public void rangesAreFetchedOnce() throws IOException {
+        String url = origin.url("/a.mp4");
+
+        Response middle = get(server.getProxyUrl(url), "bytes=300000-399999");
+        assertArrayEquals(Arrays.copyOfRange(videoA, 300_000, 400_000), middle.body);
+        Response all = get(server.getProxyUrl(url), null);
+        assertArrayEquals(videoA, all.body);
+
+        awaitCached(url);
+        assertEquals(VIDEO_BYTES, cache.getUsedBytes());
+        assertEquals(VIDEO_BYTES, cache.getMissBytes());
+        assertEquals(100_000, cache.getHitBytes());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverBudget() throws IOException {
+        server.stop();
+        long budgetBytes = VIDEO_BYTES * 3 / 2;
+        startServer(budgetBytes);
+        String urlA = origin.url("/a.mp4");
+        String urlB = origin.url("/b.mp4");
+
+        assertArrayEquals(videoA, get(server.getProxyUrl(urlA), null).body);
+        awaitCached(urlA);
+        assertArrayEquals(videoB, get(server.getProxyUrl(urlB), null).body);
+        awaitCached(urlB);
+
+        assertTrue(cache.getEvictionCount() > 0);
+        assertTrue(cache.getUsedBytes() <= budgetBytes);
+        assertFalse(server.isCached(urlA));
+    }
+
+    @Test
+    public void playerReadsBehindPrefetch() throws IOException, InterruptedException {
+        // Slow enough that the player starts while the prefetch is still fetching.
+        origin.close();
+        origin = new StandInServer(Collections.singletonMap("/a.mp4", videoA), ORIGIN_LATENCY_MS, 2 * VIDEO_BYTES);
+        String url = origin.url("/a.mp4");
+
+        server.prefetch(url, 2);
+        Thread.sleep(ORIGIN_LATENCY_MS * 2);
+        Response played = get(server.getProxyUrl(url), null);
+        assertArrayEquals(videoA, played.body);
+
+        awaitCached(url);
+        assertEquals(VIDEO_BYTES, cache.getUsedBytes());
+        assertEquals(VIDEO_BYTES, cache.getMissBytes());
+        assertTrue(cache.getHitBytes() > 0);
+    }
+
+    /**
+     * Waits until all of {@code url} is cached, spans are committed after the response was sent.
+     */
+    private void awaitCached(String url) {
+        String key = VideoCache.keyOf(url);
+        await(() -> cache.getCachedBytesFrom(key, 0) >= VIDEO_BYTES);
+    }
+
+    /**
+     * Waits until {@code condition} holds, at most 10 s. Statistics are recorded after the bytes
+     * they count were sent.
+     */
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static Response get(String url, String range) throws IOException {
+        long startNs = System.nanoTime();
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (range != null) {
+            connection.setRequestProperty("Range", range);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int first = in.read();
+            long firstByteNanos = System.nanoTime() - startNs;
+            if (first >= 0) {
+                body.write(first);
+                byte[] buffer = new byte[16 * 1024];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    body.write(buffer, 0, read);
+                }
+            }
+            return new Response(body.toByteArray(), firstByteNanos);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static final class Response {
+        final byte[] body;
+        final long firstByteNanos;
+
+        Response(byte[] body, long firstByteNanos) {
+            this.body = body;
+            this.firstByteNanos = firstByteNanos;
+        }
+    }
+}